@@ -19,8 +19,13 @@
 
 package org.ijsberg.iglu.configuration;
 
+import org.ijsberg.iglu.util.reflection.MethodSelector;
+
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 
@@ -28,6 +33,9 @@ import java.util.Set;
  * Components are elementary building blocks of an application's structure.
  * An object that represents a structural part (component) of an application may be embedded in a component.
  * A component facilitates setting of properties as well as references to other components.
+ * <p/>
+ * Methods with a default implementation were added in later versions; the defaults
+ * keep implementations written against earlier versions working.
  */
 public interface Component {
 
@@ -72,6 +80,59 @@ public interface Component {
 	 */
 	void setReference(Facade facade, String componentId, Class<?> ... interfaces);
 
+	/**
+	 * Updates references to a component of which the exposure of interfaces changed.
+	 * Has the same outcome as setReference with the complete set of interfaces
+	 * the component exposes after the change.
+	 *
+	 * @param facade              facade that must expose a component with id componentId
+	 * @param componentId         ID of the component
+	 * @param addedInterfaces     interfaces the component exposes from now on
+	 * @param removedInterfaces   interfaces the component no longer exposes
+	 */
+	default void updateReference(Facade facade, String componentId, Class<?>[] addedInterfaces, Class<?>[] removedInterfaces) {
+		setReference(facade, componentId, facade.getExposedInterfaces(componentId));
+	}
+
+	/**
+	 * Replaces proxies that have been injected for a certain component by
+	 * direct references obtained from that component.
+	 * Only interfaces that are currently injected for the component are affected.
+	 * By default, injected proxies are kept.
+	 *
+	 * @param componentId ID of the component
+	 * @param component   the component with that ID
+	 * @see #getDirectReference(Class)
+	 */
+	default void injectDirectReferences(String componentId, Component component) {
+	}
+
+	/**
+	 * Intercepters set after a direct reference has been obtained do not affect it.
+	 *
+	 * @param interfaceClass
+	 * @return the wrapped object itself if no intercepter applies to the given interface,
+	 * otherwise a proxy implementing the given interface; by default the same as getProxy
+	 */
+	default <T> T getDirectReference(Class<T> interfaceClass) {
+		return getProxy(interfaceClass);
+	}
+
+	/**
+	 * Replaces the embedded object. The new object receives the properties, references
+	 * and listeners the current one has received. Proxies obtained before pass
+	 * invocations to the new object from then on; invocations in progress
+	 * complete on the current object.
+	 *
+	 * @param newImplementation object with the same interfaces, setters and register methods
+	 * @return the replaced object
+	 * @throws IllegalArgumentException if the new object does not fit in place of the current one
+	 * @throws UnsupportedOperationException if the component does not support replacement
+	 */
+	default Object replaceImplementation(Object newImplementation) {
+		throw new UnsupportedOperationException("component does not support replacing its implementation");
+	}
+
 	/**
 	 * Removes previously injected proxies for a certain component.
 	 *
@@ -110,6 +171,100 @@ public interface Component {
 	 */
 	void setInvocationIntercepter(Class<?> interfaceClass, InvocationHandler interceptor);
 
+	/**
+	 * Appends an intercepter to the chain of intercepters for a particular interface.
+	 * Intercepters are invoked in order of position. Each intercepter receives, as proxy,
+	 * an object on which invoking the method proceeds to the next intercepter,
+	 * or to the wrapped object in case of the last intercepter.
+	 *
+	 * @param interfaceClass interface of which invocations must be intercepted
+	 * @param interceptor
+	 */
+	default void addInvocationIntercepter(Class<?> interfaceClass, InvocationHandler interceptor) {
+		addInvocationIntercepter(interfaceClass, interceptor, null);
+	}
+
+	/**
+	 * Inserts an intercepter in the chain of intercepters for a particular interface.
+	 *
+	 * @param interfaceClass interface of which invocations must be intercepted
+	 * @param position       position in the chain, 0 being the intercepter that is invoked first
+	 * @param interceptor
+	 * @throws IndexOutOfBoundsException if position exceeds the length of the chain
+	 */
+	default void addInvocationIntercepter(Class<?> interfaceClass, int position, InvocationHandler interceptor) {
+		addInvocationIntercepter(interfaceClass, position, interceptor, null);
+	}
+
+	/**
+	 * Appends an intercepter that only applies to selected methods of an interface.
+	 * The selector is evaluated once per method when invocations are bound;
+	 * invocations of methods that are not selected by any intercepter bypass interception.
+	 *
+	 * @param interfaceClass interface of which invocations must be intercepted
+	 * @param interceptor
+	 * @param selector       selects intercepted methods, null selecting all methods
+	 * @throws UnsupportedOperationException if the component does not support chains of intercepters
+	 * @see org.ijsberg.iglu.util.reflection.MethodSelectors
+	 */
+	default void addInvocationIntercepter(Class<?> interfaceClass, InvocationHandler interceptor, MethodSelector selector) {
+		throw new UnsupportedOperationException("component does not support chains of intercepters");
+	}
+
+	/**
+	 * Inserts an intercepter that only applies to selected methods of an interface.
+	 *
+	 * @param interfaceClass interface of which invocations must be intercepted
+	 * @param position       position in the chain, 0 being the intercepter that is invoked first
+	 * @param interceptor
+	 * @param selector       selects intercepted methods, null selecting all methods
+	 * @throws IndexOutOfBoundsException if position exceeds the length of the chain
+	 * @throws UnsupportedOperationException if the component does not support chains of intercepters
+	 */
+	default void addInvocationIntercepter(Class<?> interfaceClass, int position, InvocationHandler interceptor, MethodSelector selector) {
+		throw new UnsupportedOperationException("component does not support chains of intercepters");
+	}
+
+	/**
+	 * @param interfaceClass
+	 * @param interceptor
+	 * @return true if the intercepter was part of the chain for the interface
+	 * @throws UnsupportedOperationException if the component does not support chains of intercepters
+	 */
+	default boolean removeInvocationIntercepter(Class<?> interfaceClass, InvocationHandler interceptor) {
+		throw new UnsupportedOperationException("component does not support chains of intercepters");
+	}
+
+	/**
+	 * @param interfaceClass
+	 * @return a copy of the chain of intercepters for the interface, in order of invocation
+	 * @throws UnsupportedOperationException if the component does not support chains of intercepters
+	 */
+	default List<InvocationHandler> getInvocationIntercepters(Class<?> interfaceClass) {
+		throw new UnsupportedOperationException("component does not support chains of intercepters");
+	}
+
+	/**
+	 * Setters are the methods of the wrapped object that are used to inject
+	 * references to components (see setReference).
+	 *
+	 * @return an unmodifiable map of the parameter types of setters that take a single argument,
+	 * keyed by setter name without 'set'; empty by default, as clusters pass references
+	 * to all other components to components other than StandardComponent anyway
+	 */
+	default Map<String, Set<Class<?>>> getSetterTypes() {
+		return Collections.emptyMap();
+	}
+
+	/**
+	 * @return an unmodifiable set of the parameter types of the methods named 'register'
+	 * that take a single argument (see register); empty by default, as clusters pass
+	 * all other components to register to components other than StandardComponent anyway
+	 */
+	default Set<Class<?>> getListenerTypes() {
+		return Collections.emptySet();
+	}
+
 	/**
 	 * @param methodName name of a method declared by a component's interface
 	 * @param parameters
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2011-2014 Jeroen Meetsma - IJsberg Automatisering BV
+ *
+ * This file is part of Iglu.
+ *
+ * Iglu is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Iglu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Iglu.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.ijsberg.iglu.configuration.module;
+
+import org.ijsberg.iglu.util.reflection.MethodHandleDispatcher;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Passes notifications on to a listener on a thread of an executor,
+ * so that a slow listener does not hold up the component that notifies it.
+ * <p/>
+ * Invocations of void methods are queued and return immediately. The queue is bounded;
+ * if it is full, the notification is either discarded or the notifying thread waits
+ * until the listener catches up. Both are counted, as are notifications
+ * the listener fails to handle.
+ * At most one task per listener drains the queue, so notifications reach
+ * the listener in the order in which they were sent.
+ * <p/>
+ * Methods that return a value, such as getters the notifier may call on registration,
+ * are invoked directly and may therefore overtake pending notifications.
+ */
+class AsynchronousListener implements InvocationHandler, Runnable {
+
+	public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+	private final MethodHandleDispatcher listener;
+	private final Executor executor;
+	private final BlockingQueue<Notification> queue;
+	private final boolean discardWhenFull;
+	private final AtomicBoolean draining = new AtomicBoolean();
+	private final AtomicLong nrofDelayedCalls = new AtomicLong();
+	private final AtomicLong nrofDiscardedCalls = new AtomicLong();
+	private final AtomicLong nrofFailedCalls = new AtomicLong();
+
+	private static class Notification {
+
+		private final Method method;
+		private final Object[] arguments;
+
+		private Notification(Method method, Object[] arguments) {
+			this.method = method;
+			this.arguments = arguments;
+		}
+	}
+
+	private static class DefaultExecutorHolder {
+		private static final Executor EXECUTOR = createDefaultExecutor();
+	}
+
+	/**
+	 * @param listener listener, usually a component proxy
+	 * @param executor executor that delivers notifications, the default executor if null
+	 * @param queueCapacity maximum number of pending notifications
+	 * @param discardWhenFull if true, notifications that do not fit in the queue are discarded;
+	 *                        if false, the notifying thread waits for room in the queue
+	 */
+	AsynchronousListener(Object listener, Executor executor, int queueCapacity, boolean discardWhenFull) {
+		checkQueueCapacity(queueCapacity);
+		this.listener = new MethodHandleDispatcher(listener);
+		this.executor = executor != null ? executor : getDefaultExecutor();
+		this.queue = new ArrayBlockingQueue<Notification>(queueCapacity);
+		this.discardWhenFull = discardWhenFull;
+	}
+
+	static void checkQueueCapacity(int queueCapacity) {
+		if (queueCapacity < 1) {
+			throw new IllegalArgumentException("queue capacity must be positive, got " + queueCapacity);
+		}
+	}
+
+	/**
+	 * @param interfaceClass listener interface
+	 * @return a proxy that delivers invocations of void methods asynchronously
+	 */
+	public <T> T createProxy(Class<T> interfaceClass) {
+		return interfaceClass.cast(Proxy.newProxyInstance(interfaceClass.getClassLoader(), new Class<?>[]{interfaceClass}, this));
+	}
+
+	/**
+	 * @param interfaceClass listener interface
+	 * @param listener listener, usually a component proxy
+	 * @param executor executor that delivers notifications, the default executor if null
+	 * @param queueCapacity maximum number of pending notifications
+	 * @return a proxy that delivers invocations of void methods asynchronously,
+	 * waiting for room in the queue if it is full
+	 */
+	public static <T> T createProxy(Class<T> interfaceClass, Object listener, Executor executor, int queueCapacity) {
+		return new AsynchronousListener(listener, executor, queueCapacity, false).createProxy(interfaceClass);
+	}
+
+	/**
+	 * @return an executor that runs each task on a virtual thread if the JVM supports
+	 * them, or else a pool of daemon threads
+	 */
+	public static Executor getDefaultExecutor() {
+		return DefaultExecutorHolder.EXECUTOR;
+	}
+
+	private static Executor createDefaultExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (Exception virtualThreadsNotSupported) {
+			return Executors.newCachedThreadPool(new ThreadFactory() {
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "iglu-listener");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] arguments) throws Throwable {
+		if (method.getDeclaringClass() == Object.class) {
+			if ("equals".equals(method.getName())) {
+				return proxy == arguments[0];
+			}
+			if ("hashCode".equals(method.getName())) {
+				return System.identityHashCode(proxy);
+			}
+		}
+		if (method.getReturnType() != void.class) {
+			return listener.invoke(method, arguments);
+		}
+		Notification notification = new Notification(method, arguments);
+		if (!queue.offer(notification)) {
+			if (discardWhenFull) {
+				nrofDiscardedCalls.incrementAndGet();
+				return null;
+			}
+			nrofDelayedCalls.incrementAndGet();
+			queue.put(notification);
+		}
+		scheduleDrain();
+		return null;
+	}
+
+	private void scheduleDrain() {
+		if (draining.compareAndSet(false, true)) {
+			try {
+				executor.execute(this);
+			} catch (RuntimeException e) {
+				draining.set(false);
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * Delivers pending notifications.
+	 */
+	@Override
+	public void run() {
+		do {
+			Notification notification;
+			while ((notification = queue.poll()) != null) {
+				try {
+					listener.invoke(notification.method, notification.arguments);
+				} catch (Throwable t) {
+					nrofFailedCalls.incrementAndGet();
+				}
+			}
+			draining.set(false);
+			//a notification may have been queued after the last poll but before draining was reset
+		} while (!queue.isEmpty() && draining.compareAndSet(false, true));
+	}
+
+	/**
+	 * @return number of notifications for which the notifying thread had to wait for room in the queue
+	 */
+	public long getNrofDelayedCalls() {
+		return nrofDelayedCalls.get();
+	}
+
+	/**
+	 * @return number of notifications discarded because the queue was full
+	 */
+	public long getNrofDiscardedCalls() {
+		return nrofDiscardedCalls.get();
+	}
+
+	/**
+	 * @return number of notifications the listener failed to handle
+	 */
+	public long getNrofFailedCalls() {
+		return nrofFailedCalls.get();
+	}
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2011-2014 Jeroen Meetsma - IJsberg Automatisering BV
+ *
+ * This file is part of Iglu.
+ *
+ * Iglu is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Iglu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Iglu.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.ijsberg.iglu.configuration.module;
+
+import org.ijsberg.iglu.util.reflection.MethodHandleDispatcher;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Merges repeated notifications to a listener.
+ * <p/>
+ * Invocations of void methods are held for the duration of a window and return immediately.
+ * Of the invocations of a method with the same key only the latest is kept. At the end
+ * of the window the kept invocations are delivered as a batch, in order of first arrival.
+ * The key is the method, or the method and its first argument.
+ * <p/>
+ * A window ends after a number of milliseconds, or when a number of invocations
+ * has been received, whichever comes first. Windows that end in time are delivered
+ * by a single shared timer thread, so a slow listener should be made asynchronous
+ * before it is made coalescing.
+ * <p/>
+ * Methods that return a value are invoked directly. Failures of the listener
+ * can not be reported to the notifier and are counted instead.
+ */
+class CoalescingListener implements InvocationHandler {
+
+	private final MethodHandleDispatcher listener;
+	private final long windowMillis;
+	private final int maxCalls;
+	private final boolean keyedByFirstArgument;
+
+	private final Object deliveryLock = new Object();
+	//guarded by this
+	private LinkedHashMap<Object, Notification> pending = new LinkedHashMap<Object, Notification>();
+	private int nrofCallsInWindow;
+	private long window;
+	private boolean timerStarted;
+	private boolean closed;
+
+	private final AtomicLong nrofReceivedCalls = new AtomicLong();
+	private final AtomicLong nrofSuppressedCalls = new AtomicLong();
+	private final AtomicLong nrofDeliveredCalls = new AtomicLong();
+	private final AtomicLong nrofFailedCalls = new AtomicLong();
+
+	private static class Notification {
+
+		private final Method method;
+		private final Object[] arguments;
+
+		private Notification(Method method, Object[] arguments) {
+			this.method = method;
+			this.arguments = arguments;
+		}
+	}
+
+	private static class TimerHolder {
+		private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "iglu-coalescing");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * @param listener listener, usually a component proxy
+	 * @param windowMillis maximum time invocations are held
+	 * @param maxCalls number of invocations that ends a window early, 0 for no limit
+	 * @param keyedByFirstArgument if true, invocations are only merged if their first arguments are equal
+	 */
+	CoalescingListener(Object listener, long windowMillis, int maxCalls, boolean keyedByFirstArgument) {
+		checkWindow(windowMillis, maxCalls);
+		this.listener = new MethodHandleDispatcher(listener);
+		this.windowMillis = windowMillis;
+		this.maxCalls = maxCalls;
+		this.keyedByFirstArgument = keyedByFirstArgument;
+	}
+
+	/**
+	 * @param windowMillis
+	 * @param maxCalls
+	 * @throws IllegalArgumentException if the window is not limited in time, so that
+	 * invocations might be held forever, or if the number of calls is negative
+	 */
+	static void checkWindow(long windowMillis, int maxCalls) {
+		if (windowMillis <= 0 || maxCalls < 0) {
+			throw new IllegalArgumentException("window must last a positive number of milliseconds and calls, got " + windowMillis + " ms and " + maxCalls + " calls");
+		}
+	}
+
+	/**
+	 * @param interfaceClass listener interface
+	 * @return a proxy that coalesces invocations of void methods
+	 */
+	public <T> T createProxy(Class<T> interfaceClass) {
+		return interfaceClass.cast(Proxy.newProxyInstance(interfaceClass.getClassLoader(), new Class<?>[]{interfaceClass}, this));
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] arguments) throws Throwable {
+		if (method.getDeclaringClass() == Object.class) {
+			if ("equals".equals(method.getName())) {
+				return proxy == arguments[0];
+			}
+			if ("hashCode".equals(method.getName())) {
+				return System.identityHashCode(proxy);
+			}
+		}
+		if (method.getReturnType() != void.class) {
+			return listener.invoke(method, arguments);
+		}
+		nrofReceivedCalls.incrementAndGet();
+		Object key = keyedByFirstArgument && arguments != null ? Arrays.asList(method, arguments[0]) : method;
+		boolean windowFull = false;
+		long timedWindow = -1;
+		synchronized (this) {
+			if (closed) {
+				nrofSuppressedCalls.incrementAndGet();
+				return null;
+			}
+			if (pending.put(key, new Notification(method, arguments)) != null) {
+				nrofSuppressedCalls.incrementAndGet();
+			}
+			nrofCallsInWindow++;
+			if (maxCalls > 0 && nrofCallsInWindow >= maxCalls) {
+				windowFull = true;
+			} else if (!timerStarted) {
+				timerStarted = true;
+				timedWindow = window;
+			}
+		}
+		if (windowFull) {
+			flush(-1);
+		} else if (timedWindow >= 0) {
+			startTimer(timedWindow);
+		}
+		return null;
+	}
+
+	private void startTimer(final long timedWindow) {
+		TimerHolder.TIMER.schedule(new Runnable() {
+			public void run() {
+				flush(timedWindow);
+			}
+		}, windowMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Delivers the invocations held in the current window.
+	 */
+	public void flush() {
+		flush(-1);
+	}
+
+	/**
+	 * @param timedWindow window ended by the timer, or -1 if the current window must end
+	 */
+	private void flush(long timedWindow) {
+		synchronized (deliveryLock) {
+			Map<Object, Notification> notifications;
+			synchronized (this) {
+				if (timedWindow >= 0 && timedWindow != window) {
+					//window already ended by number of calls
+					return;
+				}
+				notifications = pending;
+				pending = new LinkedHashMap<Object, Notification>();
+				nrofCallsInWindow = 0;
+				timerStarted = false;
+				window++;
+			}
+			for (Notification notification : notifications.values()) {
+				nrofDeliveredCalls.incrementAndGet();
+				try {
+					listener.invoke(notification.method, notification.arguments);
+				} catch (Throwable t) {
+					nrofFailedCalls.incrementAndGet();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Discards the invocations held in the current window and any invocations
+	 * received from now on. Invoked when the listener is unregistered.
+	 */
+	public synchronized void close() {
+		closed = true;
+		nrofSuppressedCalls.addAndGet(pending.size());
+		pending = new LinkedHashMap<Object, Notification>();
+		nrofCallsInWindow = 0;
+		//ends the window, so that a pending timer does nothing
+		window++;
+	}
+
+	/**
+	 * @return number of invocations of void methods received
+	 */
+	public long getNrofReceivedCalls() {
+		return nrofReceivedCalls.get();
+	}
+
+	/**
+	 * @return number of invocations not passed on, because they were replaced by
+	 * a later invocation with the same key or the listener was closed
+	 */
+	public long getNrofSuppressedCalls() {
+		return nrofSuppressedCalls.get();
+	}
+
+	/**
+	 * @return number of invocations passed on to the listener
+	 */
+	public long getNrofDeliveredCalls() {
+		return nrofDeliveredCalls.get();
+	}
+
+	/**
+	 * @return number of invocations passed on that the listener failed to handle
+	 */
+	public long getNrofFailedCalls() {
+		return nrofFailedCalls.get();
+	}
+}
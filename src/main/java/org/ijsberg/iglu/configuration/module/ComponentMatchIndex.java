@@ -0,0 +1,226 @@
+/*
+ * Copyright 2011-2014 Jeroen Meetsma - IJsberg Automatisering BV
+ *
+ * This file is part of Iglu.
+ *
+ * Iglu is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Iglu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Iglu.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.ijsberg.iglu.configuration.module;
+
+import org.ijsberg.iglu.configuration.Component;
+
+import java.util.*;
+
+/**
+ * Indexes components by the setters and register methods of their embedded objects,
+ * so that the components that can reference or register a particular component
+ * are found without considering every other component.
+ * <p/>
+ * A component references a component with ID 'x' if it has a setter named 'setX'
+ * that accepts one of the interfaces of that component.
+ * A component registers a component if it has a 'register' method that takes
+ * one of the interfaces of that component.
+ * <p/>
+ * Only for plain StandardComponents the references they take can be derived from setters.
+ * Other components, including subclasses of StandardComponent that look up references
+ * by type, reference every other component.
+ */
+class ComponentMatchIndex {
+
+	private HashMap<String, Component> componentsById = new HashMap<String, Component>();
+	private HashMap<String, Set<String>> idsBySetterKey = new HashMap<String, Set<String>>();
+	private HashMap<String, Set<String>> idsByReferenceKey = new HashMap<String, Set<String>>();
+	private HashMap<Class<?>, Set<String>> idsByListenerType = new HashMap<Class<?>, Set<String>>();
+	private HashMap<Class<?>, Set<String>> idsByInterface = new HashMap<Class<?>, Set<String>>();
+	private LinkedHashSet<String> idsReferencingAll = new LinkedHashSet<String>();
+
+	/**
+	 * @param componentId
+	 * @return the key of the setters that take references to the component with the given ID
+	 */
+	static String getReferenceKey(String componentId) {
+		return StandardComponent.makeFirstCharUpperCase(componentId);
+	}
+
+	/**
+	 * @param component
+	 * @return true if the component must be passed references to all other components,
+	 * and all other components to register, as it may look them up by type
+	 * or may not report its setters and register methods
+	 */
+	static boolean referencesAll(Component component) {
+		return component.getClass() != StandardComponent.class;
+	}
+
+	void add(String componentId, Component component) {
+		componentsById.put(componentId, component);
+		if (referencesAll(component)) {
+			idsReferencingAll.add(componentId);
+		}
+		for (String setterKey : component.getSetterTypes().keySet()) {
+			addToIndex(idsBySetterKey, setterKey, componentId);
+		}
+		addToIndex(idsByReferenceKey, getReferenceKey(componentId), componentId);
+		for (Class<?> listenerType : component.getListenerTypes()) {
+			addToIndex(idsByListenerType, listenerType, componentId);
+		}
+		for (Class<?> interfaceClass : component.getInterfaces()) {
+			addToIndex(idsByInterface, interfaceClass, componentId);
+		}
+	}
+
+	void remove(String componentId) {
+		Component component = componentsById.remove(componentId);
+		if (component == null) {
+			return;
+		}
+		idsReferencingAll.remove(componentId);
+		for (String setterKey : component.getSetterTypes().keySet()) {
+			removeFromIndex(idsBySetterKey, setterKey, componentId);
+		}
+		removeFromIndex(idsByReferenceKey, getReferenceKey(componentId), componentId);
+		for (Class<?> listenerType : component.getListenerTypes()) {
+			removeFromIndex(idsByListenerType, listenerType, componentId);
+		}
+		for (Class<?> interfaceClass : component.getInterfaces()) {
+			removeFromIndex(idsByInterface, interfaceClass, componentId);
+		}
+	}
+
+	Component getComponent(String componentId) {
+		return componentsById.get(componentId);
+	}
+
+	/**
+	 * @param componentId
+	 * @return IDs of other components that have a setter that accepts the component with the given ID
+	 * or that reference all components
+	 */
+	Set<String> getReferencingIds(String componentId) {
+		Set<String> retval = new LinkedHashSet<String>();
+		Component component = componentsById.get(componentId);
+		String referenceKey = getReferenceKey(componentId);
+		for (String referencingId : getFromIndex(idsBySetterKey, referenceKey)) {
+			if (!referencingId.equals(componentId) && accepts(componentsById.get(referencingId), referenceKey, component)) {
+				retval.add(referencingId);
+			}
+		}
+		retval.addAll(idsReferencingAll);
+		retval.remove(componentId);
+		return retval;
+	}
+
+	/**
+	 * @param componentId
+	 * @return IDs of other components that the component with the given ID has a setter for,
+	 * or all other components if it references all
+	 */
+	Set<String> getReferencedIds(String componentId) {
+		Set<String> retval = new LinkedHashSet<String>();
+		Component component = componentsById.get(componentId);
+		if (referencesAll(component)) {
+			retval.addAll(componentsById.keySet());
+			retval.remove(componentId);
+			return retval;
+		}
+		for (String setterKey : component.getSetterTypes().keySet()) {
+			for (String referencedId : getFromIndex(idsByReferenceKey, setterKey)) {
+				if (!referencedId.equals(componentId) && accepts(component, setterKey, componentsById.get(referencedId))) {
+					retval.add(referencedId);
+				}
+			}
+		}
+		return retval;
+	}
+
+	/**
+	 * @param componentId
+	 * @return IDs of other components that have a register method for the component with the given ID
+	 * or that register all components
+	 */
+	Set<String> getRegisteringIds(String componentId) {
+		Set<String> retval = getRegisteringIds(componentsById.get(componentId));
+		retval.remove(componentId);
+		return retval;
+	}
+
+	/**
+	 * @param component any component, indexed or not
+	 * @return IDs of components that have a register method for the given component
+	 * or that register all components
+	 */
+	Set<String> getRegisteringIds(Component component) {
+		Set<String> retval = new LinkedHashSet<String>();
+		for (Class<?> interfaceClass : component.getInterfaces()) {
+			retval.addAll(getFromIndex(idsByListenerType, interfaceClass));
+		}
+		retval.addAll(idsReferencingAll);
+		return retval;
+	}
+
+	/**
+	 * @param componentId
+	 * @return IDs of other components that the component with the given ID has a register method for,
+	 * or all other components if it registers all
+	 */
+	Set<String> getRegisteredIds(String componentId) {
+		Set<String> retval = new LinkedHashSet<String>();
+		if (referencesAll(componentsById.get(componentId))) {
+			retval.addAll(componentsById.keySet());
+			retval.remove(componentId);
+			return retval;
+		}
+		for (Class<?> listenerType : componentsById.get(componentId).getListenerTypes()) {
+			retval.addAll(getFromIndex(idsByInterface, listenerType));
+		}
+		retval.remove(componentId);
+		return retval;
+	}
+
+	private static boolean accepts(Component referencingComponent, String setterKey, Component referencedComponent) {
+		for (Class<?> parameterType : referencingComponent.getSetterTypes().get(setterKey)) {
+			for (Class<?> interfaceClass : referencedComponent.getInterfaces()) {
+				if (parameterType.isAssignableFrom(interfaceClass)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static <K> void addToIndex(Map<K, Set<String>> index, K key, String componentId) {
+		Set<String> componentIds = index.get(key);
+		if (componentIds == null) {
+			componentIds = new LinkedHashSet<String>();
+			index.put(key, componentIds);
+		}
+		componentIds.add(componentId);
+	}
+
+	private static <K> void removeFromIndex(Map<K, Set<String>> index, K key, String componentId) {
+		Set<String> componentIds = index.get(key);
+		if (componentIds != null) {
+			componentIds.remove(componentId);
+			if (componentIds.isEmpty()) {
+				index.remove(key);
+			}
+		}
+	}
+
+	private static <K> Set<String> getFromIndex(Map<K, Set<String>> index, K key) {
+		Set<String> componentIds = index.get(key);
+		return componentIds != null ? componentIds : Collections.<String>emptySet();
+	}
+}
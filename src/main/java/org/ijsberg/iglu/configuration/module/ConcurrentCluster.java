@@ -0,0 +1,295 @@
+/*
+ * Copyright 2011-2014 Jeroen Meetsma - IJsberg Automatisering BV
+ *
+ * This file is part of Iglu.
+ *
+ * Iglu is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Iglu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Iglu.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.ijsberg.iglu.configuration.module;
+
+import org.ijsberg.iglu.configuration.Cluster;
+import org.ijsberg.iglu.configuration.Component;
+import org.ijsberg.iglu.configuration.ConfigurationException;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cluster that may be reconfigured while it is in use.
+ * <p/>
+ * Changes in configuration are serialized. After each change a new, immutable snapshot
+ * of the topology is published. Queries, such as isConnected and getProxy, and
+ * calls through the facade read the latest snapshot without taking a lock.
+ * They either see a change in configuration in full or not at all.
+ */
+public class ConcurrentCluster extends StandardCluster {
+
+	private final ReentrantLock writeLock = new ReentrantLock();
+	private volatile Topology topology = new Topology();
+
+	/**
+	 * Immutable state of the cluster at some point in time.
+	 */
+	private static class Topology {
+
+		private final Map<String, Component> internalComponentsById;
+		private final Set<Component> internalComponents;
+		private final Set<Component> externalComponents;
+		private final Map<String, Set<Class<?>>> exposedInterfacesByComponentId;
+		private final boolean frozen;
+
+		private Topology() {
+			this.internalComponentsById = Collections.emptyMap();
+			this.internalComponents = Collections.emptySet();
+			this.externalComponents = Collections.emptySet();
+			this.exposedInterfacesByComponentId = Collections.emptyMap();
+			this.frozen = false;
+		}
+
+		private Topology(StandardCluster cluster) {
+			this.internalComponentsById = Collections.unmodifiableMap(cluster.getInternalComponents());
+			Set<Component> internalComponents = Collections.newSetFromMap(new IdentityHashMap<Component, Boolean>());
+			internalComponents.addAll(internalComponentsById.values());
+			this.internalComponents = Collections.unmodifiableSet(internalComponents);
+			this.externalComponents = Collections.unmodifiableSet(cluster.getExternalComponents());
+			HashMap<String, Set<Class<?>>> exposedInterfacesByComponentId = new HashMap<String, Set<Class<?>>>();
+			for (String componentId : cluster.getExposedComponentIds()) {
+				exposedInterfacesByComponentId.put(componentId, Collections.unmodifiableSet(
+						new HashSet<Class<?>>(Arrays.asList(cluster.getExposedInterfaces(componentId)))));
+			}
+			this.exposedInterfacesByComponentId = Collections.unmodifiableMap(exposedInterfacesByComponentId);
+			this.frozen = cluster.isFrozen();
+		}
+	}
+
+	private void lock() {
+		writeLock.lock();
+	}
+
+	/**
+	 * Publishes a new snapshot when the outermost change in configuration is done.
+	 */
+	private void publishAndUnlock() {
+		try {
+			if (writeLock.getHoldCount() == 1) {
+				topology = new Topology(this);
+			}
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * @return true if the current thread is changing the configuration,
+	 * in which case queries must reflect the state under construction
+	 */
+	private boolean isReconfiguring() {
+		return writeLock.isHeldByCurrentThread();
+	}
+
+	@Override
+	public void connect(String componentId, Component component) throws ConfigurationException {
+		lock();
+		try {
+			super.connect(componentId, component);
+		} finally {
+			publishAndUnlock();
+		}
+	}
+
+	@Override
+	public void connect(String componentId, Component component, Class<?>... exposedInterfaces) throws ConfigurationException {
+		lock();
+		try {
+			super.connect(componentId, component, exposedInterfaces);
+		} finally {
+			publishAndUnlock();
+		}
+	}
+
+	@Override
+	public void connect(Component externalComponent) throws ConfigurationException {
+		lock();
+		try {
+			super.connect(externalComponent);
+		} finally {
+			publishAndUnlock();
+		}
+	}
+
+	@Override
+	public void connect(String clusterName, Cluster cluster) throws ConfigurationException {
+		lock();
+		try {
+			super.connect(clusterName, cluster);
+		} finally {
+			publishAndUnlock();
+		}
+	}
+
+	@Override
+	public void connectAll(Map<String, Component> componentsById, Map<String, Class<?>[]> exposedInterfacesById) throws ConfigurationException {
+		lock();
+		try {
+			super.connectAll(componentsById, exposedInterfacesById);
+		} finally {
+			publishAndUnlock();
+		}
+	}
+
+	@Override
+	public Object replaceImplementation(String componentId, Object newImplementation) throws ConfigurationException {
+		lock();
+		try {
+			return super.replaceImplementation(componentId, newImplementation);
+		} finally {
+			publishAndUnlock();
+		}
+	}
+
+	@Override
+	public void disconnect(Component component) {
+		lock();
+		try {
+			super.disconnect(component);
+		} finally {
+			publishAndUnlock();
+		}
+	}
+
+	@Override
+	public void expose(String internalComponentId, Class<?>... interfaces) {
+		lock();
+		try {
+			super.expose(internalComponentId, interfaces);
+		} finally {
+			publishAndUnlock();
+		}
+	}
+
+	@Override
+	public void freeze() throws ConfigurationException {
+		lock();
+		try {
+			super.freeze();
+		} finally {
+			publishAndUnlock();
+		}
+	}
+
+	@Override
+	public void thaw() {
+		lock();
+		try {
+			super.thaw();
+		} finally {
+			publishAndUnlock();
+		}
+	}
+
+	@Override
+	public boolean isConnected(Component component) {
+		return isConnectedInternally(component) || isConnectedExternally(component);
+	}
+
+	@Override
+	public boolean isConnectedInternally(Component component) {
+		if (isReconfiguring()) {
+			return super.isConnectedInternally(component);
+		}
+		return topology.internalComponents.contains(component);
+	}
+
+	@Override
+	public boolean isConnectedExternally(Component component) {
+		if (isReconfiguring()) {
+			return super.isConnectedExternally(component);
+		}
+		return topology.externalComponents.contains(component);
+	}
+
+	@Override
+	public boolean isExposed(String componentId) {
+		if (isReconfiguring()) {
+			return super.isExposed(componentId);
+		}
+		return topology.exposedInterfacesByComponentId.containsKey(componentId);
+	}
+
+	@Override
+	public boolean isFrozen() {
+		if (isReconfiguring()) {
+			return super.isFrozen();
+		}
+		return topology.frozen;
+	}
+
+	/**
+	 * @return an unmodifiable set
+	 */
+	@Override
+	public Set<String> getExposedComponentIds() {
+		if (isReconfiguring()) {
+			return super.getExposedComponentIds();
+		}
+		return topology.exposedInterfacesByComponentId.keySet();
+	}
+
+	@Override
+	public Class<?>[] getExposedInterfaces(String componentId) {
+		if (isReconfiguring()) {
+			return super.getExposedInterfaces(componentId);
+		}
+		Set<Class<?>> exposedInterfaces = topology.exposedInterfacesByComponentId.get(componentId);
+		if (exposedInterfaces == null) {
+			throw new ConfigurationException("component with id '" + componentId + "' is not exposed");
+		}
+		return exposedInterfaces.toArray(new Class<?>[0]);
+	}
+
+	@Override
+	public <T> T getProxy(String componentId, Class<T> exposedInterface) {
+		if (isReconfiguring()) {
+			return super.getProxy(componentId, exposedInterface);
+		}
+		return getCachedProxy(componentId, topology.internalComponentsById.get(componentId), exposedInterface);
+	}
+
+	@Override
+	public Map<String, Component> getInternalComponents() {
+		if (isReconfiguring()) {
+			return super.getInternalComponents();
+		}
+		return new HashMap<String, Component>(topology.internalComponentsById);
+	}
+
+	@Override
+	public Set<Component> getExternalComponents() {
+		if (isReconfiguring()) {
+			return super.getExternalComponents();
+		}
+		return new HashSet<Component>(topology.externalComponents);
+	}
+
+	@Override
+	protected boolean isExposed(String componentId, Class<?> interfaceClass) {
+		if (isReconfiguring()) {
+			return super.isExposed(componentId, interfaceClass);
+		}
+		Set<Class<?>> exposedInterfaces = topology.exposedInterfacesByComponentId.get(componentId);
+		return exposedInterfaces != null && exposedInterfaces.contains(interfaceClass);
+	}
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2011-2014 Jeroen Meetsma - IJsberg Automatisering BV
+ *
+ * This file is part of Iglu.
+ *
+ * Iglu is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Iglu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Iglu.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.ijsberg.iglu.configuration.module;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Is thrown by a multicast listener if one or more of its members failed
+ * to handle a notification. All members have been notified nonetheless.
+ * The first failure is the cause, the others are added as suppressed exceptions.
+ */
+public class MulticastException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final List<Throwable> failures;
+	private final int nrofListeners;
+
+	/**
+	 * @param methodName name of the method invoked on the listeners
+	 * @param failures exceptions thrown by the failing listeners
+	 * @param nrofListeners number of listeners notified
+	 */
+	public MulticastException(String methodName, List<Throwable> failures, int nrofListeners) {
+		super(failures.size() + " of " + nrofListeners + " listeners failed to handle " + methodName, failures.get(0));
+		for (Throwable failure : failures.subList(1, failures.size())) {
+			addSuppressed(failure);
+		}
+		this.failures = Collections.unmodifiableList(failures);
+		this.nrofListeners = nrofListeners;
+	}
+
+	/**
+	 * @return exceptions thrown by the failing listeners, in order of notification
+	 */
+	public List<Throwable> getFailures() {
+		return failures;
+	}
+
+	/**
+	 * @return number of listeners notified
+	 */
+	public int getNrofListeners() {
+		return nrofListeners;
+	}
+}
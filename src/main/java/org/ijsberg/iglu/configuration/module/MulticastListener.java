@@ -0,0 +1,224 @@
+/*
+ * Copyright 2011-2014 Jeroen Meetsma - IJsberg Automatisering BV
+ *
+ * This file is part of Iglu.
+ *
+ * Iglu is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Iglu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Iglu.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.ijsberg.iglu.configuration.module;
+
+import org.ijsberg.iglu.util.reflection.MethodHandleDispatcher;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * Presents a group of listeners as a single listener.
+ * Invocations fan out to all members, either one after the other
+ * on the calling thread, or in parallel in a fork-join pool. In both cases the invocation
+ * returns after all members are notified; failures are reported together
+ * by a MulticastException.
+ * <p/>
+ * Only interfaces of which all methods are void can be multicast, since there is
+ * no single value a group could return. In particular, a notifier can not tell
+ * the group apart from its first member by querying it.
+ * <p/>
+ * Members are kept in a copy-on-write array, so that notifications
+ * need no locking and are not affected by members joining or leaving.
+ */
+class MulticastListener implements InvocationHandler {
+
+	private static final MethodHandleDispatcher[] NO_MEMBERS = new MethodHandleDispatcher[0];
+
+	private static final ClassValue<Boolean> MULTICASTABLE = new ClassValue<Boolean>() {
+		@Override
+		protected Boolean computeValue(Class<?> interfaceClass) {
+			for (Method method : interfaceClass.getMethods()) {
+				if (method.getReturnType() != void.class) {
+					return false;
+				}
+			}
+			return true;
+		}
+	};
+
+	private final Object proxy;
+	private final ForkJoinPool pool;
+	private volatile MethodHandleDispatcher[] members = NO_MEMBERS;
+
+	/**
+	 * @param interfaceClass listener interface
+	 * @param pool pool for parallel fan-out, or null for sequential fan-out
+	 * @throws IllegalArgumentException if the interface declares methods that return a value
+	 */
+	MulticastListener(Class<?> interfaceClass, ForkJoinPool pool) {
+		if (!isMulticastable(interfaceClass)) {
+			throw new IllegalArgumentException("interface " + interfaceClass.getName() + " has methods that return a value and can not be multicast");
+		}
+		this.pool = pool;
+		this.proxy = Proxy.newProxyInstance(interfaceClass.getClassLoader(), new Class<?>[]{interfaceClass}, this);
+	}
+
+	/**
+	 * @param interfaceClass
+	 * @return true if all methods of the interface are void
+	 */
+	public static boolean isMulticastable(Class<?> interfaceClass) {
+		return MULTICASTABLE.get(interfaceClass);
+	}
+
+	/**
+	 * @return the single listener that represents the group
+	 */
+	public Object getProxy() {
+		return proxy;
+	}
+
+	/**
+	 * @param listener
+	 */
+	public synchronized void add(Object listener) {
+		MethodHandleDispatcher[] newMembers = Arrays.copyOf(members, members.length + 1);
+		newMembers[members.length] = new MethodHandleDispatcher(listener);
+		members = newMembers;
+	}
+
+	/**
+	 * @param listener
+	 * @return true if the listener was a member
+	 */
+	public synchronized boolean remove(Object listener) {
+		for (int i = 0; i < members.length; i++) {
+			if (members[i].getTarget() == listener) {
+				MethodHandleDispatcher[] newMembers = new MethodHandleDispatcher[members.length - 1];
+				System.arraycopy(members, 0, newMembers, 0, i);
+				System.arraycopy(members, i + 1, newMembers, i, newMembers.length - i);
+				members = newMembers;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param listener
+	 * @return true if the listener is a member
+	 */
+	public boolean contains(Object listener) {
+		for (MethodHandleDispatcher member : members) {
+			if (member.getTarget() == listener) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return number of members
+	 */
+	public int size() {
+		return members.length;
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] arguments) throws Throwable {
+		if (method.getDeclaringClass() == Object.class) {
+			if ("equals".equals(method.getName())) {
+				return proxy == arguments[0];
+			}
+			if ("hashCode".equals(method.getName())) {
+				return System.identityHashCode(proxy);
+			}
+			return "multicast to " + members.length + " listeners";
+		}
+		MethodHandleDispatcher[] currentMembers = members;
+		if (pool != null && currentMembers.length > 1) {
+			invokeInParallel(currentMembers, method, arguments);
+		} else {
+			invokeSequentially(currentMembers, method, arguments);
+		}
+		return null;
+	}
+
+	private static void invokeSequentially(MethodHandleDispatcher[] currentMembers, Method method, Object[] arguments) {
+		List<Throwable> failures = null;
+		for (MethodHandleDispatcher member : currentMembers) {
+			try {
+				member.invoke(method, arguments);
+			} catch (Throwable t) {
+				if (failures == null) {
+					failures = new ArrayList<Throwable>();
+				}
+				failures.add(t);
+			}
+		}
+		if (failures != null) {
+			throw new MulticastException(method.getName(), failures, currentMembers.length);
+		}
+	}
+
+	/**
+	 * Lets the pool notify all members but the first, which is notified by the calling thread.
+	 * If the calling thread is a worker of the pool, the deliveries are forked
+	 * and joined, so that the worker helps out instead of blocking the pool.
+	 */
+	private void invokeInParallel(MethodHandleDispatcher[] currentMembers, final Method method, final Object[] arguments) {
+		List<ForkJoinTask<Throwable>> deliveries = new ArrayList<ForkJoinTask<Throwable>>(currentMembers.length);
+		for (final MethodHandleDispatcher member : currentMembers) {
+			deliveries.add(ForkJoinTask.adapt(new Callable<Throwable>() {
+				public Throwable call() {
+					try {
+						member.invoke(method, arguments);
+						return null;
+					} catch (Throwable t) {
+						return t;
+					}
+				}
+			}));
+		}
+		Thread currentThread = Thread.currentThread();
+		boolean inPool = currentThread instanceof ForkJoinWorkerThread && ((ForkJoinWorkerThread) currentThread).getPool() == pool;
+		for (ForkJoinTask<Throwable> delivery : deliveries.subList(1, deliveries.size())) {
+			if (inPool) {
+				delivery.fork();
+			} else {
+				pool.execute(delivery);
+			}
+		}
+		deliveries.get(0).invoke();
+		List<Throwable> failures = null;
+		for (ForkJoinTask<Throwable> delivery : deliveries) {
+			Throwable failure = delivery.join();
+			if (failure != null) {
+				if (failures == null) {
+					failures = new ArrayList<Throwable>();
+				}
+				failures.add(failure);
+			}
+		}
+		if (failures != null) {
+			throw new MulticastException(method.getName(), failures, currentMembers.length);
+		}
+	}
+}
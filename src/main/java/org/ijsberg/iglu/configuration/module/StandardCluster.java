@@ -24,25 +24,34 @@ import org.ijsberg.iglu.configuration.Component;
 import org.ijsberg.iglu.configuration.ConfigurationException;
 import org.ijsberg.iglu.configuration.Facade;
 
-import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
 
-public class StandardCluster implements Cluster, Facade, InvocationHandler {
+public class StandardCluster implements Cluster, Facade {
 
 	private HashMap<String, Set<Class<?>>> exposedInterfacesByComponentId = new HashMap<String, Set<Class<?>>>();
 	private Set<Component> externalComponents = new HashSet<Component>();
 	private HashMap<String, Component> internalComponentsById = new HashMap<String, Component>();
+	//reverse index of internalComponentsById
+	private IdentityHashMap<Component, Set<String>> componentIdsByInternalComponent = new IdentityHashMap<Component, Set<String>>();
+	//internal components by setters and register methods
+	private ComponentMatchIndex matchIndex = new ComponentMatchIndex();
+	private boolean frozen;
+	private final ConcurrentHashMap<String, ComponentProxies> proxiesByComponentId = new ConcurrentHashMap<String, ComponentProxies>();
+	private final Facade facade = new ClusterFacade();
 
 	@Override
 	public boolean isConnected(Component component) {
 		return isConnectedInternally(component) || isConnectedExternally(component);
 	}
 
+	/**
+	 * @param component
+	 * @return true if this very component instance is connected as internal component
+	 */
 	public boolean isConnectedInternally(Component component) {
-		return internalComponentsById.values().contains(component);
+		return componentIdsByInternalComponent.containsKey(component);
 	}
 
 	public boolean isConnectedExternally(Component component) {
@@ -62,12 +71,13 @@ public class StandardCluster implements Cluster, Facade, InvocationHandler {
 	 */
 	public void connect(String componentId, Component component) throws ConfigurationException {
 		System.out.println("connecting component with id " + componentId);
+		ensureNotFrozen();
 		if (isConnectedExternally(component)) {
 			throw new ConfigurationException("component " + component + " is already connected as external component");
 		}
 		ensureIdNotRegisteredByOther(componentId);
-		internalComponentsById.put(componentId, component);
-		setDependenciesForNewInternalComponent(componentId, component);
+		addInternalComponent(componentId, component);
+		setDependenciesForNewInternalComponent(componentId, Collections.singleton(componentId));
 		registerExternalComponentAsListener(componentId, component);
 		for(Cluster cluster : clustersDependingOn) {
 			cluster.getFacade().connect(component);
@@ -98,6 +108,7 @@ public class StandardCluster implements Cluster, Facade, InvocationHandler {
 	private void setExposedInterfaces(String componentId, Component component,
 									  Class<?>... exposedInterfaces) {
 		exposedInterfacesByComponentId.put(componentId, new HashSet<Class<?>>(Arrays.asList(exposedInterfaces)));
+		removeProxiesForUnexposedInterfaces(componentId);
 		setInterfacesInExternalComponents(componentId, component);
 	}
 
@@ -109,6 +120,7 @@ public class StandardCluster implements Cluster, Facade, InvocationHandler {
 	 */
 	public void connect(Component externalComponent) throws ConfigurationException {
 
+		ensureNotFrozen();
 		if (isConnected(externalComponent)) {
 			throw new ConfigurationException("component " + externalComponent + " is already connected");
 		}
@@ -122,6 +134,7 @@ public class StandardCluster implements Cluster, Facade, InvocationHandler {
 	 * @param component
 	 */
 	public void disconnect(Component component) {
+		ensureNotFrozen();
 		if (isConnectedInternally(component)) {
 			Set<String> componentIds = lookUpComponentIds(component);
 			for (String componentId : componentIds) {
@@ -131,7 +144,7 @@ public class StandardCluster implements Cluster, Facade, InvocationHandler {
 				this.unregisterExternalListeners(componentId, component);
 				exposedInterfacesByComponentId.remove(componentId);
 				removeDependenciesForInternalComponent(componentId, component);
-				internalComponentsById.remove(componentId);
+				removeInternalComponent(componentId, component);
 			}
 		} else if (isConnectedExternally(component)) {
 			removeDependenciesForExternalComponent(component);
@@ -139,6 +152,139 @@ public class StandardCluster implements Cluster, Facade, InvocationHandler {
 		}
 	}
 
+	/**
+	 * Replaces the object embedded in an internal component (see Component.replaceImplementation).
+	 * References to the component and listener registrations, in this cluster as well
+	 * as in dependent clusters, stay in place and lead to the new object.
+	 *
+	 * @param componentId
+	 * @param newImplementation
+	 * @return the replaced object
+	 * @throws ConfigurationException if the cluster is frozen or if no component is connected under componentId
+	 */
+	public Object replaceImplementation(String componentId, Object newImplementation) throws ConfigurationException {
+		//frozen components hold direct references to the current implementation
+		ensureNotFrozen();
+		Component component = getInternalComponent(componentId);
+		if (component == null) {
+			throw new ConfigurationException("component '" + componentId + "' is not connected");
+		}
+		return component.replaceImplementation(newImplementation);
+	}
+
+	/**
+	 * Connects a number of components as internal components in one pass, exposing
+	 * interfaces of some of them. The outcome equals connecting the components one by one,
+	 * except that references and listeners are only set between components of which
+	 * the embedded objects have matching setters or register methods. Components other than
+	 * plain StandardComponents are passed references to all components, as before.
+	 *
+	 * @param componentsById        components to connect by ID
+	 * @param exposedInterfacesById interfaces to expose by component ID, may be null
+	 * @throws ConfigurationException if a component or ID is already registered
+	 */
+	public void connectAll(Map<String, Component> componentsById, Map<String, Class<?>[]> exposedInterfacesById) throws ConfigurationException {
+		ensureNotFrozen();
+		if (exposedInterfacesById == null) {
+			exposedInterfacesById = Collections.emptyMap();
+		}
+		for (String componentId : componentsById.keySet()) {
+			Component component = componentsById.get(componentId);
+			if (isConnectedExternally(component)) {
+				throw new ConfigurationException("component " + component + " is already connected as external component");
+			}
+			ensureIdNotRegisteredByOther(componentId);
+		}
+		for (String componentId : exposedInterfacesById.keySet()) {
+			if (!componentsById.containsKey(componentId)) {
+				throw new ConfigurationException("component '" + componentId + "' to expose is not among the components to connect");
+			}
+			ensureComponentExposesInterfaces(componentsById.get(componentId), Arrays.asList(exposedInterfacesById.get(componentId)));
+		}
+		System.out.println("connecting " + componentsById.size() + " components");
+
+		for (String componentId : componentsById.keySet()) {
+			addInternalComponent(componentId, componentsById.get(componentId));
+		}
+		for (String componentId : componentsById.keySet()) {
+			setDependenciesForNewInternalComponent(componentId, componentsById.keySet());
+			registerExternalComponentAsListener(componentId, componentsById.get(componentId));
+		}
+		for (Cluster cluster : clustersDependingOn) {
+			for (Component component : componentsById.values()) {
+				if (!cluster.isConnected(component)) {
+					cluster.getFacade().connect(component);
+				}
+			}
+		}
+		for (String componentId : exposedInterfacesById.keySet()) {
+			setExposedInterfaces(componentId, componentsById.get(componentId), exposedInterfacesById.get(componentId));
+		}
+		System.out.println(componentsById.size() + " components connected");
+	}
+
+	/**
+	 * Connects a number of components like connectAll and subsequently sets their properties
+	 * on the common fork-join pool.
+	 *
+	 * @see #startAll(Map, Map, Map, ForkJoinPool)
+	 */
+	public StartupReport startAll(Map<String, Component> componentsById, Map<String, Properties> propertiesById,
+								  Map<String, Class<?>[]> exposedInterfacesById) throws ConfigurationException {
+		return startAll(componentsById, propertiesById, exposedInterfacesById, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Connects a number of components like connectAll and subsequently sets their properties
+	 * level by level along their dependencies. A component depends on components it has
+	 * a setter for or registers as listener. The properties of components on the same level
+	 * are set in parallel, after the components on lower levels are done; components that
+	 * depend on each other are dealt with one by one, in order of registration.
+	 * The report is returned to be logged by the caller.
+	 *
+	 * @param componentsById        components to connect by ID
+	 * @param propertiesById        properties to set by component ID, may be null
+	 * @param exposedInterfacesById interfaces to expose by component ID, may be null
+	 * @param pool                  pool that sets properties
+	 * @return levels, timing and critical path of the start
+	 * @throws ConfigurationException if a component or ID is already registered
+	 */
+	public StartupReport startAll(Map<String, Component> componentsById, Map<String, Properties> propertiesById,
+								  Map<String, Class<?>[]> exposedInterfacesById, ForkJoinPool pool) throws ConfigurationException {
+		if (propertiesById == null) {
+			propertiesById = Collections.emptyMap();
+		}
+		connectAll(componentsById, exposedInterfacesById);
+		return new StartupPlan(componentsById).execute(propertiesById, pool);
+	}
+
+	/**
+	 * Sets references and registers listeners between a new component and the components that match,
+	 * except for pairs of new components of which the other one is dealt with.
+	 *
+	 * @param componentId
+	 * @param newComponentIds IDs of all components connected along with the component
+	 */
+	private void setDependenciesForNewInternalComponent(String componentId, Set<String> newComponentIds) {
+		Component component = matchIndex.getComponent(componentId);
+		for (String referencingId : matchIndex.getReferencingIds(componentId)) {
+			matchIndex.getComponent(referencingId).setReference(this, componentId, component.getInterfaces());
+		}
+		for (String referencedId : matchIndex.getReferencedIds(componentId)) {
+			if (!newComponentIds.contains(referencedId)) {
+				component.setReference(this, referencedId, matchIndex.getComponent(referencedId).getInterfaces());
+			}
+		}
+		for (String registeringId : matchIndex.getRegisteringIds(componentId)) {
+			matchIndex.getComponent(registeringId).register(component);
+		}
+		for (String registeredId : matchIndex.getRegisteredIds(componentId)) {
+			if (!newComponentIds.contains(registeredId)) {
+				component.register(matchIndex.getComponent(registeredId));
+			}
+		}
+	}
+
 	/**
 	 * @param newExposedComponentId
 	 * @param newExposedComponent
@@ -188,34 +334,23 @@ public class StandardCluster implements Cluster, Facade, InvocationHandler {
 	}
 
 	/**
-	 * @param componentId
-	 * @param component
-	 */
-	private void setDependenciesForNewInternalComponent(String componentId, Component component) {
-		for (String internalComponentId : new HashSet<String>(internalComponentsById.keySet())) {
-			if (!internalComponentId.equals(componentId)) {
-				Component internalComponent = internalComponentsById.get(internalComponentId);
-				internalComponent.setReference(this, componentId, component.getInterfaces());
-				internalComponent.register(component);
-				component.setReference(this, internalComponentId, internalComponent.getInterfaces());
-				component.register(internalComponent);
-			}
-		}
-	}
-
-	/**
+	 * Removes references and listener registrations between a component and the components that match.
+	 *
 	 * @param componentId
 	 * @param component
 	 */
 	private void removeDependenciesForInternalComponent(String componentId, Component component) {
-		for (String internalComponentId : internalComponentsById.keySet()) {
-			if (!internalComponentId.equals(componentId)) {
-				Component internalComponent = internalComponentsById.get(internalComponentId);
-				internalComponent.removeDependency(componentId);
-				internalComponent.unregister(component);
-				component.removeDependency(internalComponentId);
-				component.unregister(internalComponent);
-			}
+		for (String referencingId : matchIndex.getReferencingIds(componentId)) {
+			matchIndex.getComponent(referencingId).removeDependency(componentId);
+		}
+		for (String referencedId : matchIndex.getReferencedIds(componentId)) {
+			component.removeDependency(referencedId);
+		}
+		for (String registeringId : matchIndex.getRegisteringIds(componentId)) {
+			matchIndex.getComponent(registeringId).unregister(component);
+		}
+		for (String registeredId : matchIndex.getRegisteredIds(componentId)) {
+			component.unregister(matchIndex.getComponent(registeredId));
 		}
 	}
 
@@ -234,9 +369,8 @@ public class StandardCluster implements Cluster, Facade, InvocationHandler {
 	 * @param externalComponent
 	 */
 	private void registerNewExternalComponent(Component externalComponent) {
-		for (String internalComponentId : internalComponentsById.keySet()) {
-			Component internalComponent = internalComponentsById.get(internalComponentId);
-			internalComponent.register(externalComponent);
+		for (String registeringId : matchIndex.getRegisteringIds(externalComponent)) {
+			matchIndex.getComponent(registeringId).register(externalComponent);
 		}
 	}
 
@@ -244,12 +378,11 @@ public class StandardCluster implements Cluster, Facade, InvocationHandler {
 	 * @param externalComponent
 	 */
 	private void removeDependenciesForExternalComponent(Component externalComponent) {
-		for (String internalComponentId : internalComponentsById.keySet()) {
-			if (isExposed(internalComponentId)) {
-				externalComponent.removeDependency(internalComponentId);
-			}
-			Component internalComponent = internalComponentsById.get(internalComponentId);
-			internalComponent.unregister(externalComponent);
+		for (String exposedComponentId : exposedInterfacesByComponentId.keySet()) {
+			externalComponent.removeDependency(exposedComponentId);
+		}
+		for (String registeringId : matchIndex.getRegisteringIds(externalComponent)) {
+			matchIndex.getComponent(registeringId).unregister(externalComponent);
 		}
 	}
 
@@ -262,6 +395,15 @@ public class StandardCluster implements Cluster, Facade, InvocationHandler {
 		}
 	}
 
+	/**
+	 * @throws ConfigurationException if the cluster is frozen
+	 */
+	private void ensureNotFrozen() {
+		if (frozen) {
+			throw new ConfigurationException("cluster is frozen and must be thawed before it can be reconfigured");
+		}
+	}
+
 	/**
 	 * @param component
 	 * @param requestedInterfaces
@@ -305,7 +447,71 @@ public class StandardCluster implements Cluster, Facade, InvocationHandler {
 		/*if(!this.exposedInterfacesByComponentId.get(componentId).contains(exposedInterface)) {
 			throw new ConfigurationException("interface " + exposedInterface.getSimpleName() + " of component with id '" + componentId + "' is not exposed");
 		}*/
-		return component.createProxy(exposedInterface);
+		return getCachedProxy(componentId, component, exposedInterface);
+	}
+
+	/**
+	 * Proxies are cached per component ID and interface. A cached proxy is only
+	 * handed out for the very component it was created for, so that a proxy cached
+	 * for a component that is disconnected meanwhile is never used for its successor.
+	 *
+	 * @param componentId
+	 * @param component      the component currently connected under componentId
+	 * @param interfaceClass
+	 * @return a proxy for the component
+	 */
+	protected <T> T getCachedProxy(String componentId, Component component, Class<T> interfaceClass) {
+		if (component == null) {
+			throw new NullPointerException("component with id '" + componentId + "' is not connected");
+		}
+		ComponentProxies proxies = proxiesByComponentId.get(componentId);
+		if (proxies == null || proxies.component != component) {
+			ComponentProxies newProxies = new ComponentProxies(component);
+			if (proxies == null ? proxiesByComponentId.putIfAbsent(componentId, newProxies) == null :
+					proxiesByComponentId.replace(componentId, proxies, newProxies)) {
+				proxies = newProxies;
+			} else {
+				//another thread got there first
+				return getCachedProxy(componentId, component, interfaceClass);
+			}
+		}
+		Object proxy = proxies.proxiesByInterface.get(interfaceClass);
+		if (proxy == null) {
+			proxy = component.createProxy(interfaceClass);
+			Object existingProxy = proxies.proxiesByInterface.putIfAbsent(interfaceClass, proxy);
+			if (existingProxy != null) {
+				proxy = existingProxy;
+			}
+		}
+		return interfaceClass.cast(proxy);
+	}
+
+	/**
+	 * @param componentId
+	 */
+	private void removeProxiesForUnexposedInterfaces(String componentId) {
+		ComponentProxies proxies = proxiesByComponentId.get(componentId);
+		if (proxies != null) {
+			Set<Class<?>> exposedInterfaces = exposedInterfacesByComponentId.get(componentId);
+			if (exposedInterfaces == null) {
+				proxies.proxiesByInterface.clear();
+			} else {
+				proxies.proxiesByInterface.keySet().retainAll(exposedInterfaces);
+			}
+		}
+	}
+
+	/**
+	 * Proxies created for a particular component.
+	 */
+	private static class ComponentProxies {
+
+		private final Component component;
+		private final ConcurrentHashMap<Class<?>, Object> proxiesByInterface = new ConcurrentHashMap<Class<?>, Object>();
+
+		private ComponentProxies(Component component) {
+			this.component = component;
+		}
 	}
 
 	/**
@@ -318,16 +524,35 @@ public class StandardCluster implements Cluster, Facade, InvocationHandler {
 
 	/**
 	 * @param component
-	 * @return
+	 * @return a copy of the IDs under which the component is connected internally
 	 */
 	private Set<String> lookUpComponentIds(Component component) {
-		Set<String> retval = new HashSet<>();
-		for (String componentId : internalComponentsById.keySet()) {
-			if (internalComponentsById.get(componentId) == component) {
-				retval.add(componentId);
+		Set<String> componentIds = componentIdsByInternalComponent.get(component);
+		return componentIds != null ? new HashSet<String>(componentIds) : new HashSet<String>();
+	}
+
+	private void addInternalComponent(String componentId, Component component) {
+		internalComponentsById.put(componentId, component);
+		matchIndex.add(componentId, component);
+		Set<String> componentIds = componentIdsByInternalComponent.get(component);
+		if (componentIds == null) {
+			componentIds = new HashSet<String>(1);
+			componentIdsByInternalComponent.put(component, componentIds);
+		}
+		componentIds.add(componentId);
+	}
+
+	private void removeInternalComponent(String componentId, Component component) {
+		internalComponentsById.remove(componentId);
+		proxiesByComponentId.remove(componentId);
+		matchIndex.remove(componentId);
+		Set<String> componentIds = componentIdsByInternalComponent.get(component);
+		if (componentIds != null) {
+			componentIds.remove(componentId);
+			if (componentIds.isEmpty()) {
+				componentIdsByInternalComponent.remove(component);
 			}
 		}
-		return retval;
 	}
 
 	/**
@@ -335,43 +560,49 @@ public class StandardCluster implements Cluster, Facade, InvocationHandler {
 	 * @param interfaceClass
 	 * @return
 	 */
-	private boolean isExposed(String componentId, Class<?> interfaceClass) {
+	protected boolean isExposed(String componentId, Class<?> interfaceClass) {
 		Set<Class<?>> exposedInterfaces = exposedInterfacesByComponentId.get(componentId);
 		return exposedInterfaces != null && exposedInterfaces.contains(interfaceClass);
 	}
 
+	/**
+	 * @return the facade of this cluster, which is the same object on every invocation
+	 */
+	public Facade getFacade() {
+		return facade;
+	}
 
 	/**
-	 * Invoked through proxy instance for facade.
-	 *
-	 * @param proxy
-	 * @param method
-	 * @param arguments
-	 * @return
-	 * @throws Throwable
+	 * Passes calls on to the cluster directly. Only hands out proxies for exposed interfaces.
 	 */
-	public Object invoke(Object proxy, Method method, Object[] arguments)
-			throws Throwable {
+	private class ClusterFacade implements Facade {
 
-		Object retval;
-		if (method.getName().equals("getProxy")) {
-			if (!isExposed((String) arguments[0], (Class<?>) arguments[1])) {
-				throw new ConfigurationException((String) arguments[0] + " does not expose " + arguments[1]);
-			}
+		public void connect(Component externalComponent) {
+			StandardCluster.this.connect(externalComponent);
 		}
-		try {
-			retval = method.invoke(this, arguments);
-		} catch (InvocationTargetException ite) {
-			throw ite.getCause();
+
+		public void disconnect(Component component) {
+			StandardCluster.this.disconnect(component);
 		}
-		return retval;
-	}
 
-	/**
-	 * @return
-	 */
-	public Facade getFacade() {
-		return (Facade) Proxy.newProxyInstance(this.getClass().getClassLoader(), new Class[]{Facade.class}, this);
+		public Set<String> getExposedComponentIds() {
+			return StandardCluster.this.getExposedComponentIds();
+		}
+
+		public Class<?>[] getExposedInterfaces(String componentId) {
+			return StandardCluster.this.getExposedInterfaces(componentId);
+		}
+
+		public <T> T getProxy(String componentId, Class<T> exposedInterface) {
+			if (!isExposed(componentId, exposedInterface)) {
+				throw new ConfigurationException(componentId + " does not expose " + exposedInterface);
+			}
+			return StandardCluster.this.getProxy(componentId, exposedInterface);
+		}
+
+		public String toString() {
+			return "facade of " + StandardCluster.this;
+		}
 	}
 
 	/**
@@ -389,24 +620,142 @@ public class StandardCluster implements Cluster, Facade, InvocationHandler {
 	}
 
 	/**
+	 * Changes the interfaces a component exposes. Only the interfaces added and removed
+	 * are passed on, and only to external components that have a setter for the component.
+	 *
 	 * @param internalComponentId
-	 * @param interfaces
+	 * @param interfaces interfaces to expose; if none, the component is no longer exposed
 	 */
 	public void expose(String internalComponentId, Class<?>... interfaces) {
+		ensureNotFrozen();
 		if (!internalComponentsById.containsKey(internalComponentId)) {
 			throw new ConfigurationException("component '" + internalComponentId + "' is not connected");
 		}
-		if (isExposed(internalComponentId)) {
-			if (interfaces == null || interfaces.length == 0) {
+		if (interfaces == null || interfaces.length == 0) {
+			if (isExposed(internalComponentId)) {
 				exposedInterfacesByComponentId.remove(internalComponentId);
+				removeProxiesForUnexposedInterfaces(internalComponentId);
 				this.removeInterfacesForExternalComponents(internalComponentId, this.getInternalComponent(internalComponentId));
 			}
+			return;
 		}
 		ensureComponentExposesInterfaces(this.getInternalComponent(internalComponentId), Arrays.asList(interfaces));
-		exposedInterfacesByComponentId.put(internalComponentId, new HashSet<>(Arrays.asList(interfaces)));
-		this.setInterfacesInExternalComponents(internalComponentId, interfaces);
+
+		Set<Class<?>> exposedInterfaces = new HashSet<Class<?>>(Arrays.asList(interfaces));
+		Set<Class<?>> previouslyExposedInterfaces = exposedInterfacesByComponentId.get(internalComponentId);
+		Set<Class<?>> addedInterfaces = new HashSet<Class<?>>(exposedInterfaces);
+		Set<Class<?>> removedInterfaces = new HashSet<Class<?>>();
+		if (previouslyExposedInterfaces != null) {
+			addedInterfaces.removeAll(previouslyExposedInterfaces);
+			removedInterfaces.addAll(previouslyExposedInterfaces);
+			removedInterfaces.removeAll(exposedInterfaces);
+		}
+		exposedInterfacesByComponentId.put(internalComponentId, exposedInterfaces);
+		removeProxiesForUnexposedInterfaces(internalComponentId);
+		if (addedInterfaces.isEmpty() && removedInterfaces.isEmpty()) {
+			return;
+		}
+
+		Class<?>[] added = addedInterfaces.toArray(new Class<?>[0]);
+		Class<?>[] removed = removedInterfaces.toArray(new Class<?>[0]);
+		String referenceKey = ComponentMatchIndex.getReferenceKey(internalComponentId);
+		for (Component externalComponent : externalComponents) {
+			if (ComponentMatchIndex.referencesAll(externalComponent) || externalComponent.getSetterTypes().containsKey(referenceKey)) {
+				externalComponent.updateReference(this.getFacade(), internalComponentId, added, removed);
+			}
+		}
+	}
+
+
+	/**
+	 * Validates the configuration and replaces every proxy injected by this cluster
+	 * in internal components by a direct reference obtained from the referenced
+	 * component (see Component.getDirectReference).
+	 * Invocations through direct references skip proxy dispatch altogether.
+	 * External components keep their proxies, so that they can not reach
+	 * interfaces that are not exposed.
+	 * <p/>
+	 * A frozen cluster rejects changes in configuration until thaw is invoked.
+	 *
+	 * @throws ConfigurationException if the cluster is frozen already or if the configuration is inconsistent
+	 */
+	public void freeze() throws ConfigurationException {
+		ensureNotFrozen();
+		validate();
+		for (String componentId : internalComponentsById.keySet()) {
+			Component component = internalComponentsById.get(componentId);
+			for (String referencedId : matchIndex.getReferencedIds(componentId)) {
+				component.injectDirectReferences(referencedId, internalComponentsById.get(referencedId));
+			}
+		}
+		frozen = true;
+	}
+
+	/**
+	 * Injects proxies in place of the direct references injected by freeze
+	 * and allows changes in configuration again.
+	 */
+	public void thaw() {
+		if (!frozen) {
+			return;
+		}
+		frozen = false;
+		for (String componentId : internalComponentsById.keySet()) {
+			Component component = internalComponentsById.get(componentId);
+			for (String referencedId : matchIndex.getReferencedIds(componentId)) {
+				component.removeDependency(referencedId);
+				component.setReference(this, referencedId, internalComponentsById.get(referencedId).getInterfaces());
+			}
+		}
+	}
+
+	/**
+	 * @return true if the cluster is frozen
+	 */
+	public boolean isFrozen() {
+		return frozen;
 	}
 
+	/**
+	 * Checks that exposed components are connected and implement their exposed interfaces
+	 * and that all injected references are still backed by the referenced components.
+	 *
+	 * @throws ConfigurationException
+	 */
+	private void validate() throws ConfigurationException {
+		for (String exposedComponentId : exposedInterfacesByComponentId.keySet()) {
+			Component exposedComponent = internalComponentsById.get(exposedComponentId);
+			if (exposedComponent == null) {
+				throw new ConfigurationException("exposed component '" + exposedComponentId + "' is not connected");
+			}
+			for (Class<?> exposedInterface : exposedInterfacesByComponentId.get(exposedComponentId)) {
+				if (!exposedComponent.implementsInterface(exposedInterface)) {
+					throw new ConfigurationException("component '" + exposedComponentId + "' does not implement exposed interface " + exposedInterface);
+				}
+			}
+		}
+		for (String componentId : internalComponentsById.keySet()) {
+			Component component = internalComponentsById.get(componentId);
+			for (String referencedId : matchIndex.getReferencedIds(componentId)) {
+				for (Class<?> injectedInterface : component.getInjectedInterfaces(referencedId)) {
+					if (!internalComponentsById.get(referencedId).implementsInterface(injectedInterface)) {
+						throw new ConfigurationException("component '" + componentId + "' references interface " + injectedInterface +
+								" not implemented by component '" + referencedId + "'");
+					}
+				}
+			}
+		}
+		for (Component externalComponent : externalComponents) {
+			for (String exposedComponentId : exposedInterfacesByComponentId.keySet()) {
+				for (Class<?> injectedInterface : externalComponent.getInjectedInterfaces(exposedComponentId)) {
+					if (!isExposed(exposedComponentId, injectedInterface)) {
+						throw new ConfigurationException("external component " + externalComponent + " references interface " + injectedInterface +
+								" not exposed by component '" + exposedComponentId + "'");
+					}
+				}
+			}
+		}
+	}
 
 	////////////////////////////////////
 	/**
@@ -418,6 +767,7 @@ public class StandardCluster implements Cluster, Facade, InvocationHandler {
 	@Override
 	public void connect(String clusterName, Cluster cluster) throws ConfigurationException {
 
+		ensureNotFrozen();
 		if(isRegisteredCluster(cluster)) {
 			System.out.println("WARNING: cluster already dependent on " + clusterName);
 		} else if(cluster == this) {
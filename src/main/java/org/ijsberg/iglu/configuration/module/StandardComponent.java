@@ -22,12 +22,23 @@ package org.ijsberg.iglu.configuration.module;
 import org.ijsberg.iglu.configuration.Component;
 import org.ijsberg.iglu.configuration.ConfigurationException;
 import org.ijsberg.iglu.configuration.Facade;
+import org.ijsberg.iglu.util.reflection.InterceptionPoint;
+import org.ijsberg.iglu.util.reflection.MethodHandleDispatcher;
+import org.ijsberg.iglu.util.reflection.MethodIndex;
 import org.ijsberg.iglu.util.reflection.MethodInvocation;
+import org.ijsberg.iglu.util.reflection.MethodSelector;
+import org.ijsberg.iglu.util.reflection.ProxyClass;
+import org.ijsberg.iglu.util.reflection.ProxyClassGenerator;
 import org.ijsberg.iglu.util.reflection.ReflectionSupport;
 import org.ijsberg.iglu.util.types.Converter;
 
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Standard implementation of Component.
@@ -38,22 +49,113 @@ public class StandardComponent implements Component, InvocationHandler {
 	public static final String REGISTER_LISTENER_METHOD_NAME = "register";
 	public static final String UNREGISTER_LISTENER_METHOD_NAME = "unregister";
 
-	protected Object implementation;
+	protected volatile Object implementation;
+	//determines equality, also after the implementation is replaced
+	private final Object originalImplementation;
+	private volatile MethodHandleDispatcher dispatcher;
 	private Class<?>[] interfaces;
 	private Properties properties;
 	private Properties setterInjectedProperties = new Properties();
 
-	private HashMap<Class<?>, InvocationHandler> invocationHandlers = new HashMap<Class<?>, InvocationHandler>();
+	//copied and republished whenever intercepters change, read without locking
+	private volatile Map<Class<?>, InterfaceInterceptors> interceptorsByInterface = Collections.emptyMap();
 	private HashMap<String, Set<Class<?>>> injectedProxyTypesByComponentId = new HashMap<String, Set<Class<?>>>();
-	private HashMap<Class<?>,Object> injectedProxiesByType = new HashMap<>();
+	//kept to inject the same references in a replacing implementation
+	private HashMap<String, Map<Class<?>, Object>> injectedReferencesByComponentId = new HashMap<String, Map<Class<?>, Object>>();
+	private ConcurrentHashMap<Class<?>, Object> injectedProxiesByType = new ConcurrentHashMap<Class<?>, Object>();
 
 	private Map<Component, Map<Class<?>, Object>> registeredListenersByComponent = new HashMap<Component, Map<Class<?>, Object>>();
 
+	private static final ClassValue<Map<DynamicInvocationKey, ResolvedInvocation>> RESOLVED_INVOCATIONS = new ClassValue<Map<DynamicInvocationKey, ResolvedInvocation>>() {
+		@Override
+		protected Map<DynamicInvocationKey, ResolvedInvocation> computeValue(Class<?> implementationClass) {
+			return new ConcurrentHashMap<DynamicInvocationKey, ResolvedInvocation>();
+		}
+	};
+
+	private static final ClassValue<Map<String, Set<Class<?>>>> SETTER_TYPES = new ClassValue<Map<String, Set<Class<?>>>>() {
+		@Override
+		protected Map<String, Set<Class<?>>> computeValue(Class<?> implementationClass) {
+			MethodIndex methodIndex = ReflectionSupport.getMethodIndex(implementationClass);
+			Map<String, Set<Class<?>>> setterTypes = new HashMap<String, Set<Class<?>>>();
+			for (String methodName : methodIndex.getMethodNames()) {
+				if (methodName.startsWith("set") && methodName.length() > 3) {
+					Set<Class<?>> parameterTypes = getParameterTypes(methodIndex.getMethods(methodName, 1));
+					if (!parameterTypes.isEmpty()) {
+						setterTypes.put(methodName.substring(3), parameterTypes);
+					}
+				}
+			}
+			return Collections.unmodifiableMap(setterTypes);
+		}
+	};
+
+	private static final ClassValue<Map<Class<?>, Method>> REGISTER_METHODS = new ListenerMethods(REGISTER_LISTENER_METHOD_NAME);
+	private static final ClassValue<Map<Class<?>, Method>> UNREGISTER_METHODS = new ListenerMethods(UNREGISTER_LISTENER_METHOD_NAME);
+
+	/**
+	 * Public methods with a certain name and a single parameter, by parameter type.
+	 */
+	private static class ListenerMethods extends ClassValue<Map<Class<?>, Method>> {
+
+		private final String methodName;
+
+		private ListenerMethods(String methodName) {
+			this.methodName = methodName;
+		}
+
+		@Override
+		protected Map<Class<?>, Method> computeValue(Class<?> implementationClass) {
+			Map<Class<?>, Method> methodsByParameterType = new HashMap<Class<?>, Method>();
+			for (Method method : ReflectionSupport.getMethodIndex(implementationClass).getMethods(methodName, 1)) {
+				methodsByParameterType.put(method.getParameterTypes()[0], method);
+			}
+			return Collections.unmodifiableMap(methodsByParameterType);
+		}
+	}
+
+	private static Set<Class<?>> getParameterTypes(List<Method> methods) {
+		Set<Class<?>> parameterTypes = new HashSet<Class<?>>();
+		for (Method method : methods) {
+			parameterTypes.add(method.getParameterTypes()[0]);
+		}
+		return Collections.unmodifiableSet(parameterTypes);
+	}
+
+	private boolean generatedProxies;
+	private boolean lazyReferences;
+	private boolean asynchronousListeners;
+	private Executor listenerExecutor;
+	private int listenerQueueCapacity = AsynchronousListener.DEFAULT_QUEUE_CAPACITY;
+	private boolean discardWhenListenerQueueFull;
+	private boolean coalescingListeners;
+	private long coalescingWindowMillis;
+	private int coalescingMaxCalls;
+	private boolean coalescingKeyedByFirstArgument;
+	//by the proxy registered with the implementation
+	private Map<Object, AsynchronousListener> asynchronousListenersByProxy = new IdentityHashMap<Object, AsynchronousListener>();
+	//metrics of asynchronous listeners released on unregister
+	private long nrofDelayedNotificationsByReleasedListeners;
+	private long nrofDiscardedNotificationsByReleasedListeners;
+	private long nrofFailedNotificationsByReleasedListeners;
+	//by the proxy registered with the implementation
+	private Map<Object, CoalescingListener> coalescingListenersByProxy = new IdentityHashMap<Object, CoalescingListener>();
+	//metrics of coalescing listeners closed on unregister
+	private long nrofReceivedNotificationsByClosedListeners;
+	private long nrofSuppressedNotificationsByClosedListeners;
+	private long nrofFailedNotificationsByClosedListeners;
+	private boolean multicastListeners;
+	private ForkJoinPool multicastPool;
+	private Map<Class<?>, MulticastListener> multicastListenersByInterface = new HashMap<Class<?>, MulticastListener>();
+	private ConcurrentHashMap<Class<?>, InterfaceDispatcher> dispatchersByInterface = new ConcurrentHashMap<Class<?>, InterfaceDispatcher>();
+
 	public StandardComponent(Object implementation) {
 		if (implementation == null) {
 			throw new NullPointerException("implementation can not be null");
 		}
 		this.implementation = implementation;
+		this.originalImplementation = implementation;
+		this.dispatcher = new MethodHandleDispatcher(implementation);
 		this.interfaces = ReflectionSupport.getInterfacesForClass(implementation.getClass()).toArray(new Class<?>[0]);
 	}
 
@@ -61,7 +163,7 @@ public class StandardComponent implements Component, InvocationHandler {
 	/**
 	 * @throws NullPointerException if the cluster does not expose a component with ID componentId
 	 */
-	public void setReference(Facade facade, String componentId, Class<?>... interfaces) {
+	public synchronized void setReference(Facade facade, String componentId, Class<?>... interfaces) {
 
 		if (injectedProxyTypesByComponentId.containsKey(componentId)) {
 			resetReference(facade, componentId, interfaces);
@@ -85,6 +187,10 @@ public class StandardComponent implements Component, InvocationHandler {
 		Set<Class<?>> interfacesToBeRemoved = new HashSet<Class<?>>(currentlyInjectedInterfaces);
 		interfacesToBeRemoved.removeAll(exposedInterfaces);
 		currentlyInjectedInterfaces.removeAll(interfacesToBeRemoved);
+		Map<Class<?>, Object> injectedReferences = injectedReferencesByComponentId.get(componentId);
+		if (injectedReferences != null) {
+			injectedReferences.keySet().removeAll(interfacesToBeRemoved);
+		}
 //		injectNulls(componentId, interfacesToBeRemoved);
 
 		Set<Class<?>> interfacesToAdd = new HashSet<Class<?>>(exposedInterfaces);
@@ -95,10 +201,40 @@ public class StandardComponent implements Component, InvocationHandler {
 
 		if (currentlyInjectedInterfaces.isEmpty()) {
 			injectedProxyTypesByComponentId.remove(componentId);
+			injectedReferencesByComponentId.remove(componentId);
 			removeFacadeByType(Arrays.asList(interfaces));
 		}
 	}
 
+	@Override
+	public synchronized void updateReference(Facade facade, String componentId, Class<?>[] addedInterfaces, Class<?>[] removedInterfaces) {
+		Set<Class<?>> currentlyInjectedInterfaces = injectedProxyTypesByComponentId.get(componentId);
+		if (currentlyInjectedInterfaces == null) {
+			setReference(facade, componentId, addedInterfaces);
+			return;
+		}
+		List<Class<?>> interfacesToBeRemoved = Arrays.asList(removedInterfaces);
+		currentlyInjectedInterfaces.removeAll(interfacesToBeRemoved);
+		Map<Class<?>, Object> injectedReferences = injectedReferencesByComponentId.get(componentId);
+		if (injectedReferences != null) {
+			injectedReferences.keySet().removeAll(interfacesToBeRemoved);
+		}
+
+		List<Class<?>> interfacesToAdd = new ArrayList<Class<?>>(addedInterfaces.length);
+		for (Class<?> addedInterface : addedInterfaces) {
+			if (!currentlyInjectedInterfaces.contains(addedInterface)) {
+				interfacesToAdd.add(addedInterface);
+			}
+		}
+		currentlyInjectedInterfaces.addAll(injectProxies(componentId, interfacesToAdd, facade));
+
+		if (currentlyInjectedInterfaces.isEmpty()) {
+			injectedProxyTypesByComponentId.remove(componentId);
+			injectedReferencesByComponentId.remove(componentId);
+			removeFacadeByType(interfacesToBeRemoved);
+		}
+	}
+
 	private void removeFacadeByType(Collection<Class<?>> interfaces) {
 		if(interfaces != null) {
 			for(Class<?> interfaceX : interfaces) {
@@ -111,9 +247,10 @@ public class StandardComponent implements Component, InvocationHandler {
 	/**
 	 * @param componentId
 	 */
-	public void removeDependency(String componentId) {
+	public synchronized void removeDependency(String componentId) {
 //		injectNulls(componentId, injectedProxyTypesByComponentId.get(componentId));
 		Set<Class<?>> removedInterfaces = injectedProxyTypesByComponentId.remove(componentId);
+		injectedReferencesByComponentId.remove(componentId);
 		removeFacadeByType(removedInterfaces);
 
 	}
@@ -121,33 +258,78 @@ public class StandardComponent implements Component, InvocationHandler {
 	/**
 	 * @param component
 	 */
-	public void register(Component component) {
+	public synchronized void register(Component component) {
+		Map<Class<?>, Method> registerMethods = REGISTER_METHODS.get(implementation.getClass());
 		for (Class<?> interfaceClass : component.getInterfaces()) {
-			try {
-				Method method = implementation.getClass().getMethod(REGISTER_LISTENER_METHOD_NAME, interfaceClass);
+			Method method = registerMethods.get(interfaceClass);
+			if (method != null) {
 				Object listenerProxy = component.createProxy(interfaceClass);
+				AsynchronousListener asynchronousListener = null;
+				if (asynchronousListeners) {
+					asynchronousListener = new AsynchronousListener(listenerProxy, listenerExecutor, listenerQueueCapacity, discardWhenListenerQueueFull);
+					listenerProxy = asynchronousListener.createProxy(interfaceClass);
+				}
+				//outside the asynchronous listener, so that the timer thread only queues notifications
+				if (coalescingListeners) {
+					CoalescingListener coalescingListener = new CoalescingListener(listenerProxy, coalescingWindowMillis, coalescingMaxCalls, coalescingKeyedByFirstArgument);
+					listenerProxy = coalescingListener.createProxy(interfaceClass);
+					coalescingListenersByProxy.put(listenerProxy, coalescingListener);
+				}
+				if (asynchronousListener != null) {
+					asynchronousListenersByProxy.put(listenerProxy, asynchronousListener);
+				}
 				System.out.println("registering proxy for " + interfaceClass.getSimpleName() + " in component " + this.implementation.getClass().getSimpleName());
-				invokeMethod(method, listenerProxy);
+				if (multicastListeners && MulticastListener.isMulticastable(interfaceClass)) {
+					addToMulticastListener(method, component, interfaceClass, listenerProxy);
+				} else {
+					invokeMethod(method, listenerProxy);
+				}
 				saveRegisteredListenerProxy(component, interfaceClass, listenerProxy);
-			} catch (NoSuchMethodException ignore) {
 			}
 		}
 	}
 
+	private void addToMulticastListener(Method registerMethod, Component component, Class<?> interfaceClass, Object listenerProxy) {
+		MulticastListener multicastListener = multicastListenersByInterface.get(interfaceClass);
+		if (multicastListener == null) {
+			multicastListener = new MulticastListener(interfaceClass, multicastPool);
+			multicastListener.add(listenerProxy);
+			multicastListenersByInterface.put(interfaceClass, multicastListener);
+			invokeMethod(registerMethod, multicastListener.getProxy());
+			return;
+		}
+		Map<Class<?>, Object> registeredListeners = registeredListenersByComponent.get(component);
+		if (registeredListeners != null) {
+			//registering again replaces the listener
+			multicastListener.remove(registeredListeners.get(interfaceClass));
+		}
+		multicastListener.add(listenerProxy);
+	}
+
 
 	@Override
-	public void unregister(Component component) {
+	public synchronized void unregister(Component component) {
 		Map<Class<?>, Object> registeredListeners = registeredListenersByComponent.get(component);
 		if (registeredListeners != null) {
+			Map<Class<?>, Method> unregisterMethods = UNREGISTER_METHODS.get(implementation.getClass());
 			for (Class<?> interfaceClass : component.getInterfaces()) {
-				try {
-					Method method = implementation.getClass().getMethod(UNREGISTER_LISTENER_METHOD_NAME, interfaceClass);
-					Object listenerProxy = registeredListeners.get(interfaceClass);
-					if (listenerProxy != null) {
-						invokeMethod(method, listenerProxy);
-						registeredListeners.remove(interfaceClass);
+				Method method = unregisterMethods.get(interfaceClass);
+				Object listenerProxy = registeredListeners.get(interfaceClass);
+				MulticastListener multicastListener = multicastListenersByInterface.get(interfaceClass);
+				if (multicastListener != null && multicastListener.contains(listenerProxy)) {
+					if (multicastListener.size() == 1) {
+						if (method != null) {
+							invokeMethod(method, multicastListener.getProxy());
+						}
+						multicastListenersByInterface.remove(interfaceClass);
 					}
-				} catch (NoSuchMethodException ignore) {
+					multicastListener.remove(listenerProxy);
+					registeredListeners.remove(interfaceClass);
+					releaseListener(listenerProxy);
+				} else if (method != null && listenerProxy != null) {
+					invokeMethod(method, listenerProxy);
+					registeredListeners.remove(interfaceClass);
+					releaseListener(listenerProxy);
 				}
 			}
 		}
@@ -161,7 +343,26 @@ public class StandardComponent implements Component, InvocationHandler {
 			registeredListeners = new HashMap<Class<?>, Object>();
 			registeredListenersByComponent.put(component, registeredListeners);
 		}
-		registeredListeners.put(interfaceClass, listenerProxy);
+		Object replacedListenerProxy = registeredListeners.put(interfaceClass, listenerProxy);
+		if (replacedListenerProxy != null) {
+			releaseListener(replacedListenerProxy);
+		}
+	}
+
+	private void releaseListener(Object listenerProxy) {
+		AsynchronousListener asynchronousListener = asynchronousListenersByProxy.remove(listenerProxy);
+		if (asynchronousListener != null) {
+			nrofDelayedNotificationsByReleasedListeners += asynchronousListener.getNrofDelayedCalls();
+			nrofDiscardedNotificationsByReleasedListeners += asynchronousListener.getNrofDiscardedCalls();
+			nrofFailedNotificationsByReleasedListeners += asynchronousListener.getNrofFailedCalls();
+		}
+		CoalescingListener coalescingListener = coalescingListenersByProxy.remove(listenerProxy);
+		if (coalescingListener != null) {
+			coalescingListener.close();
+			nrofReceivedNotificationsByClosedListeners += coalescingListener.getNrofReceivedCalls();
+			nrofSuppressedNotificationsByClosedListeners += coalescingListener.getNrofSuppressedCalls();
+			nrofFailedNotificationsByClosedListeners += coalescingListener.getNrofFailedCalls();
+		}
 	}
 
 
@@ -171,16 +372,120 @@ public class StandardComponent implements Component, InvocationHandler {
 
 			for (Class<?> interfaceClass : interfaces) {
 				if (setter.getParameterTypes()[0].isAssignableFrom(interfaceClass)) {
-					Object proxy = facade.getProxy(otherComponentId, interfaceClass);
+					Object proxy = getReference(facade, otherComponentId, interfaceClass);
 					System.out.println("injecting proxy for " + interfaceClass.getSimpleName() + " in component " + this.implementation.getClass().getSimpleName());
 					invokeMethod(setter, proxy);
 					injectedProxyTypes.add(interfaceClass);
+					Map<Class<?>, Object> injectedReferences = injectedReferencesByComponentId.get(otherComponentId);
+					if (injectedReferences == null) {
+						injectedReferences = new HashMap<Class<?>, Object>();
+						injectedReferencesByComponentId.put(otherComponentId, injectedReferences);
+					}
+					injectedReferences.put(interfaceClass, proxy);
 				}
 			}
 		}
 		return injectedProxyTypes;
 	}
 
+	@Override
+	public synchronized void injectDirectReferences(String componentId, Component component) {
+		Set<Class<?>> injectedInterfaces = injectedProxyTypesByComponentId.get(componentId);
+		if (injectedInterfaces == null || injectedInterfaces.isEmpty()) {
+			return;
+		}
+		HashMap<Class<?>, Object> directReferences = new HashMap<Class<?>, Object>();
+		for (Method setter : getComponentSettersByPropertyKey(componentId)) {
+			for (Class<?> interfaceClass : injectedInterfaces) {
+				if (setter.getParameterTypes()[0].isAssignableFrom(interfaceClass)) {
+					Object reference = directReferences.get(interfaceClass);
+					if (reference == null) {
+						reference = component.getDirectReference(interfaceClass);
+						directReferences.put(interfaceClass, reference);
+					}
+					invokeMethod(setter, reference);
+				}
+			}
+		}
+	}
+
+	/**
+	 * The new implementation is fully prepared before it is published. Proxies
+	 * generated by ProxyClassGenerator that were created before refer to
+	 * the replaced implementation and therefore dispatch through the
+	 * dispatch table of their interface from then on. Proxies created
+	 * afterwards refer to the new implementation directly.
+	 */
+	@Override
+	public synchronized Object replaceImplementation(Object newImplementation) {
+		if (newImplementation == null) {
+			throw new NullPointerException("implementation can not be null");
+		}
+		Object oldImplementation = implementation;
+		if (newImplementation == oldImplementation) {
+			return oldImplementation;
+		}
+		Class<?> newClass = newImplementation.getClass();
+		if (!new HashSet<Class<?>>(ReflectionSupport.getInterfacesForClass(newClass)).equals(new HashSet<Class<?>>(Arrays.asList(interfaces))) ||
+				!SETTER_TYPES.get(newClass).equals(getSetterTypes()) || !REGISTER_METHODS.get(newClass).keySet().equals(getListenerTypes())) {
+			throw new IllegalArgumentException("class " + newClass.getName() + " differs from " + oldImplementation.getClass().getName() +
+					" in interfaces, setters or register methods");
+		}
+
+		if (properties != null) {
+			injectProperties(newImplementation, properties);
+		}
+		for (String componentId : injectedReferencesByComponentId.keySet()) {
+			Map<Class<?>, Object> injectedReferences = injectedReferencesByComponentId.get(componentId);
+			for (Method setter : getSettersByPropertyKey(newClass, componentId)) {
+				for (Class<?> interfaceClass : injectedReferences.keySet()) {
+					if (setter.getParameterTypes()[0].isAssignableFrom(interfaceClass)) {
+						invokeMethod(newImplementation, setter, injectedReferences.get(interfaceClass));
+					}
+				}
+			}
+		}
+		Map<Class<?>, Method> registerMethods = REGISTER_METHODS.get(newClass);
+		for (Map<Class<?>, Object> registeredListeners : registeredListenersByComponent.values()) {
+			for (Class<?> interfaceClass : registeredListeners.keySet()) {
+				MulticastListener multicastListener = multicastListenersByInterface.get(interfaceClass);
+				if (multicastListener == null || !multicastListener.contains(registeredListeners.get(interfaceClass))) {
+					invokeMethod(newImplementation, registerMethods.get(interfaceClass), registeredListeners.get(interfaceClass));
+				}
+			}
+		}
+		for (Class<?> interfaceClass : multicastListenersByInterface.keySet()) {
+			invokeMethod(newImplementation, registerMethods.get(interfaceClass), multicastListenersByInterface.get(interfaceClass).getProxy());
+		}
+
+		implementation = newImplementation;
+		dispatcher = new MethodHandleDispatcher(newImplementation);
+		//intercepter chains end in the implementation
+		HashMap<Class<?>, InterfaceInterceptors> newInterceptorsByInterface = new HashMap<Class<?>, InterfaceInterceptors>();
+		for (Class<?> interfaceClass : interceptorsByInterface.keySet()) {
+			newInterceptorsByInterface.put(interfaceClass, new InterfaceInterceptors(interfaceClass, interceptorsByInterface.get(interfaceClass).interceptors));
+		}
+		interceptorsByInterface = newInterceptorsByInterface;
+		updateDispatchTables();
+		for (InterfaceDispatcher interfaceDispatcher : dispatchersByInterface.values()) {
+			interfaceDispatcher.unbind();
+		}
+		return oldImplementation;
+	}
+
+	/**
+	 * If an intercepter applies, the returned proxy is generated if possible,
+	 * regardless of the setting of generatedProxies.
+	 */
+	@Override
+	public <T> T getDirectReference(Class<T> interfaceClass) {
+		this.checkInterfaceValidity(interfaceClass);
+		if (getInterfaceDispatcher(interfaceClass).isIntercepted()) {
+			return createProxy(interfaceClass, true);
+		}
+		return interfaceClass.cast(implementation);
+	}
+
 	/*
 
 		//potentially unsafe behavior
@@ -198,25 +503,255 @@ public class StandardComponent implements Component, InvocationHandler {
 	@Override
 	public <T> T createProxy(Class<T> interfaceClass) {
 		this.checkInterfaceValidity(interfaceClass);
-		return (T) Proxy.newProxyInstance(interfaceClass.getClassLoader(), new Class[]{interfaceClass}, this);
+		return createProxy(interfaceClass, generatedProxies);
 	}
 
+	private <T> T createProxy(Class<T> interfaceClass, boolean generated) {
+		if (generated) {
+			T target = interfaceClass.cast(implementation);
+			ProxyClass<T> proxyClass = ProxyClassGenerator.getProxyClass(target.getClass(), interfaceClass);
+			if (proxyClass != null) {
+				return proxyClass.newInstance(target, getInterfaceDispatcher(interfaceClass).bind(proxyClass, target));
+			}
+		}
+		return (T) Proxy.newProxyInstance(interfaceClass.getClassLoader(), new Class[]{interfaceClass}, getInterfaceDispatcher(interfaceClass));
+	}
+
+	/**
+	 * Determines how proxies are created by createProxy.
+	 * Proxies created before are not affected.
+	 * <p/>
+	 * Methods of generated proxies have the exact signatures of the interface.
+	 * Unless an intercepter applies, they pass primitives and return values
+	 * to the implementation without boxing them or allocating an argument array.
+	 *
+	 * @param generatedProxies if true, proxies are instances of classes generated by ProxyClassGenerator
+	 *                         that invoke the implementation directly unless an intercepter is set;
+	 *                         if false (default), or if no proxy class can be generated for an interface,
+	 *                         proxies are created by java.lang.reflect.Proxy
+	 */
+	public void setGeneratedProxies(boolean generatedProxies) {
+		this.generatedProxies = generatedProxies;
+	}
+
+	/**
+	 * Determines how references are injected by setReference.
+	 * References injected before are not affected.
+	 * <p/>
+	 * A lazy reference is a placeholder that obtains the proxy from the facade
+	 * on its first invocation, so that no proxies are created for references
+	 * that are never used. As a consequence, a reference to a component that
+	 * is not exposed is reported when it is first invoked instead of by setReference.
+	 *
+	 * @param lazyReferences if true, injected references are resolved on first use;
+	 *                       if false (default), proxies are obtained when references are set
+	 */
+	public void setLazyReferences(boolean lazyReferences) {
+		this.lazyReferences = lazyReferences;
+	}
+
+	/**
+	 * Determines how listeners are passed to the implementation by register.
+	 * Listeners registered before are not affected.
+	 * <p/>
+	 * An asynchronous listener queues invocations of void methods and delivers them
+	 * in order on a thread of the default executor, so that the implementation
+	 * is not held up by slow listeners.
+	 *
+	 * @param asynchronousListeners if true, listeners are notified asynchronously;
+	 *                              if false (default), notifications are delivered on the calling thread
+	 * @see AsynchronousListener#getDefaultExecutor()
+	 */
+	public synchronized void setAsynchronousListeners(boolean asynchronousListeners) {
+		this.asynchronousListeners = asynchronousListeners;
+	}
+
+	/**
+	 * Makes register pass asynchronous listeners to the implementation.
+	 * The implementation waits if the queue of a listener is full.
+	 *
+	 * @param executor executor that delivers notifications, the default executor if null
+	 * @param queueCapacity maximum number of pending notifications per listener
+	 * @see #setAsynchronousListeners(boolean)
+	 */
+	public synchronized void setAsynchronousListeners(Executor executor, int queueCapacity) {
+		setAsynchronousListeners(executor, queueCapacity, false);
+	}
+
+	/**
+	 * Makes register pass asynchronous listeners to the implementation.
+	 *
+	 * @param executor executor that delivers notifications, the default executor if null
+	 * @param queueCapacity maximum number of pending notifications per listener
+	 * @param discardWhenFull if true, notifications that do not fit in the queue of a listener
+	 *                        are discarded; if false, the implementation waits for room in the queue
+	 * @see #getNrofDelayedNotifications()
+	 * @see #getNrofDiscardedNotifications()
+	 */
+	public synchronized void setAsynchronousListeners(Executor executor, int queueCapacity, boolean discardWhenFull) {
+		AsynchronousListener.checkQueueCapacity(queueCapacity);
+		this.asynchronousListeners = true;
+		this.listenerExecutor = executor;
+		this.listenerQueueCapacity = queueCapacity;
+		this.discardWhenListenerQueueFull = discardWhenFull;
+	}
+
+	/**
+	 * Makes register pass coalescing listeners to the implementation.
+	 * Listeners registered before are not affected.
+	 * <p/>
+	 * A coalescing listener holds notifications for the duration of a window and
+	 * passes on only the latest of those with the same method and key, so that listeners
+	 * are not flooded by repeated notifications. Notifications still held when
+	 * the listener is unregistered are discarded.
+	 *
+	 * @param windowMillis maximum time notifications are held, must be positive
+	 * @param maxCalls number of notifications that ends a window early, 0 for no limit
+	 * @param keyedByFirstArgument if true, notifications are only merged if their first arguments are equal;
+	 *                             if false, notifications are merged per method
+	 * @see #getNrofSuppressedNotifications()
+	 */
+	public synchronized void setCoalescingListeners(long windowMillis, int maxCalls, boolean keyedByFirstArgument) {
+		CoalescingListener.checkWindow(windowMillis, maxCalls);
+		this.coalescingListeners = true;
+		this.coalescingWindowMillis = windowMillis;
+		this.coalescingMaxCalls = maxCalls;
+		this.coalescingKeyedByFirstArgument = keyedByFirstArgument;
+	}
+
+	/**
+	 * Makes register pass listeners that are not coalescing to the implementation.
+	 * Listeners registered before are not affected.
+	 */
+	public synchronized void unsetCoalescingListeners() {
+		this.coalescingListeners = false;
+	}
+
+	/**
+	 * @return number of notifications received by coalescing listeners this component has registered
+	 */
+	public synchronized long getNrofReceivedNotifications() {
+		long nrofReceivedCalls = nrofReceivedNotificationsByClosedListeners;
+		for (CoalescingListener coalescingListener : coalescingListenersByProxy.values()) {
+			nrofReceivedCalls += coalescingListener.getNrofReceivedCalls();
+		}
+		return nrofReceivedCalls;
+	}
+
+	/**
+	 * @return number of notifications that coalescing listeners this component has registered
+	 * did not pass on, because they were replaced by later ones or the listener was unregistered
+	 */
+	public synchronized long getNrofSuppressedNotifications() {
+		long nrofSuppressedCalls = nrofSuppressedNotificationsByClosedListeners;
+		for (CoalescingListener coalescingListener : coalescingListenersByProxy.values()) {
+			nrofSuppressedCalls += coalescingListener.getNrofSuppressedCalls();
+		}
+		return nrofSuppressedCalls;
+	}
+
+	/**
+	 * @return number of notifications passed on by asynchronous or coalescing listeners
+	 * this component has registered that the listeners failed to handle
+	 */
+	public synchronized long getNrofFailedNotifications() {
+		long nrofFailedCalls = nrofFailedNotificationsByClosedListeners + nrofFailedNotificationsByReleasedListeners;
+		for (CoalescingListener coalescingListener : coalescingListenersByProxy.values()) {
+			nrofFailedCalls += coalescingListener.getNrofFailedCalls();
+		}
+		for (AsynchronousListener asynchronousListener : asynchronousListenersByProxy.values()) {
+			nrofFailedCalls += asynchronousListener.getNrofFailedCalls();
+		}
+		return nrofFailedCalls;
+	}
+
+	/**
+	 * @return number of notifications for which the implementation had to wait
+	 * because the queue of an asynchronous listener was full
+	 */
+	public synchronized long getNrofDelayedNotifications() {
+		long nrofDelayedCalls = nrofDelayedNotificationsByReleasedListeners;
+		for (AsynchronousListener asynchronousListener : asynchronousListenersByProxy.values()) {
+			nrofDelayedCalls += asynchronousListener.getNrofDelayedCalls();
+		}
+		return nrofDelayedCalls;
+	}
+
+	/**
+	 * @return number of notifications discarded because the queue of an asynchronous listener was full
+	 */
+	public synchronized long getNrofDiscardedNotifications() {
+		long nrofDiscardedCalls = nrofDiscardedNotificationsByReleasedListeners;
+		for (AsynchronousListener asynchronousListener : asynchronousListenersByProxy.values()) {
+			nrofDiscardedCalls += asynchronousListener.getNrofDiscardedCalls();
+		}
+		return nrofDiscardedCalls;
+	}
+
+	/**
+	 * Determines how listeners are passed to the implementation by register.
+	 * Listeners registered before are not affected.
+	 * <p/>
+	 * With multicast listeners, the implementation is registered a single listener
+	 * per listener interface, that passes notifications on to all listeners
+	 * registered by the component. The multicast listener is registered when the first
+	 * listener is registered, and unregistered when the last of them is unregistered.
+	 * Listener interfaces with methods that return a value are not multicast,
+	 * since a notifier may rely on those values to keep track of its listeners.
+	 * Failing listeners do not prevent others from being notified;
+	 * their exceptions are reported together by a MulticastException.
+	 *
+	 * @param multicastListeners if true, the implementation is registered a multicast listener;
+	 *                           if false (default), it is registered each listener separately
+	 * @param parallel if true, listeners are notified in parallel by the common fork-join pool;
+	 *                 if false, they are notified one after the other on the calling thread
+	 */
+	public synchronized void setMulticastListeners(boolean multicastListeners, boolean parallel) {
+		this.multicastListeners = multicastListeners;
+		this.multicastPool = parallel ? ForkJoinPool.commonPool() : null;
+	}
 
+	private InterfaceDispatcher getInterfaceDispatcher(Class<?> interfaceClass) {
+		InterfaceDispatcher interfaceDispatcher = dispatchersByInterface.get(interfaceClass);
+		if (interfaceDispatcher == null) {
+			interfaceDispatcher = new InterfaceDispatcher(interfaceClass);
+			InterfaceDispatcher existingDispatcher = dispatchersByInterface.putIfAbsent(interfaceClass, interfaceDispatcher);
+			if (existingDispatcher != null) {
+				return existingDispatcher;
+			}
+			//intercepters may have changed before the dispatcher became visible to updateDispatchTables
+			interfaceDispatcher.update();
+		}
+		return interfaceDispatcher;
+	}
+
+	/**
+	 * Finds a reference by type instead of through a setter. Clusters pass a subclass
+	 * of StandardComponent references to all components, whether it has setters for them or not.
+	 *
+	 * @param interfaceClass
+	 * @return a proxy for the last referenced component that implements the interface, or null
+	 */
 	protected <T> T getProxyForComponentReference(Class<T> interfaceClass) {
 		return (T) injectedProxiesByType.get(interfaceClass);
 	}
 
-	private HashMap<Class<?>, Object> proxiesByInterface = new HashMap();
+	private ConcurrentHashMap<Class<?>, Object> proxiesByInterface = new ConcurrentHashMap<Class<?>, Object>();
 
+	/**
+	 * @return the same proxy for every invocation, also if invoked concurrently
+	 */
 	@Override
 	public <T> T getProxy(Class<T> interfaceClass) {
-		if (proxiesByInterface.containsKey(interfaceClass)) {
-			return (T) proxiesByInterface.get(interfaceClass);
-		} else {
-			T proxy = createProxy(interfaceClass);
-			proxiesByInterface.put(interfaceClass, proxy);
-			return proxy;
+		Object proxy = proxiesByInterface.get(interfaceClass);
+		if (proxy == null) {
+			proxy = createProxy(interfaceClass);
+			Object existingProxy = proxiesByInterface.putIfAbsent(interfaceClass, proxy);
+			if (existingProxy != null) {
+				proxy = existingProxy;
+			}
 		}
+		return (T) proxy;
 	}
 
 
@@ -236,14 +771,18 @@ public class StandardComponent implements Component, InvocationHandler {
 
 	@Override
 	public void setProperties(Properties properties) {
+		injectProperties(implementation, properties);
+		this.properties = properties;
+	}
+
+	private void injectProperties(Object target, Properties properties) {
 		for (Object key : properties.keySet()) {
 			//auto_configure_setters
 			//setters are not exposed if not part of interface
 			String value = properties.getProperty((String) key);
-			injectPropertyIfMatchingSetterFound((String) key, value);
+			injectPropertyIfMatchingSetterFound(target, (String) key, value);
 		}
-		injectPropertyIfMatchingSetterFound(PROPERTIES_PROPERTY_KEY, properties);
-		this.properties = properties;
+		injectPropertyIfMatchingSetterFound(target, PROPERTIES_PROPERTY_KEY, properties);
 	}
 
 	@Override
@@ -251,6 +790,16 @@ public class StandardComponent implements Component, InvocationHandler {
 		return properties;
 	}
 
+	@Override
+	public Map<String, Set<Class<?>>> getSetterTypes() {
+		return SETTER_TYPES.get(implementation.getClass());
+	}
+
+	@Override
+	public Set<Class<?>> getListenerTypes() {
+		return REGISTER_METHODS.get(implementation.getClass()).keySet();
+	}
+
 	/**
 	 * @return properties that have actually been injected by setter
 	 */
@@ -258,9 +807,13 @@ public class StandardComponent implements Component, InvocationHandler {
 		return setterInjectedProperties;
 	}
 
-	private Set<Method> getComponentSettersByPropertyKey(String key) {
+	private List<Method> getComponentSettersByPropertyKey(String key) {
+		return getSettersByPropertyKey(implementation.getClass(), key);
+	}
+
+	private static List<Method> getSettersByPropertyKey(Class<?> implementationClass, String key) {
 		String setterName = "set" + makeFirstCharUpperCase(key);
-		return ReflectionSupport.getMethodsByName(implementation.getClass(), setterName, 1);
+		return ReflectionSupport.getMethodIndex(implementationClass).getMethods(setterName, 1);
 	}
 
 	public static String makeFirstCharUpperCase(String varName) {
@@ -269,26 +822,30 @@ public class StandardComponent implements Component, InvocationHandler {
 		return keyStrBuf.toString();
 	}
 
-	private void injectPropertyIfMatchingSetterFound(String key, Object value) {
-		Set<Method> setters = getComponentSettersByPropertyKey(key);
+	private void injectPropertyIfMatchingSetterFound(Object target, String key, Object value) {
+		List<Method> setters = getSettersByPropertyKey(target.getClass(), key);
 		if (setters.size() > 1) {
 			throw new ConfigurationException("more than 1 (" + setters.size() +
 					") setter found for property '" + key + "'");
 		}
 		if (setters.size() == 1) {
-			injectProperty(setters.iterator().next(), value);
+			injectProperty(target, setters.iterator().next(), value);
 			setterInjectedProperties.put(key, value);
 		}
 	}
 
-	private void injectProperty(Method method, Object value) {
+	private void injectProperty(Object target, Method method, Object value) {
 		Object injectingObject = Converter.convertToObject(value, method.getParameterTypes()[0]);
-		invokeMethod(method, injectingObject);
+		invokeMethod(target, method, injectingObject);
 	}
 
 	private void invokeMethod(Method method, Object injectingObject) {
+		invokeMethod(implementation, method, injectingObject);
+	}
+
+	private static void invokeMethod(Object target, Method method, Object injectingObject) {
 		try {
-			method.invoke(implementation, injectingObject);
+			method.invoke(target, injectingObject);
 		} catch (InvocationTargetException ite) {
 			if (ite.getCause() instanceof RuntimeException) {
 				throw (RuntimeException) ite.getCause();
@@ -300,53 +857,179 @@ public class StandardComponent implements Component, InvocationHandler {
 		}
 	}
 
+	/**
+	 * Replaces all intercepters for the interface.
+	 */
+	@Override
+	public synchronized void setInvocationIntercepter(Class<?> interfaceClass, InvocationHandler handler) {
+		this.checkInterfaceValidity(interfaceClass);
+		List<SelectiveInterceptor> interceptors = new ArrayList<SelectiveInterceptor>();
+		if (handler != null) {
+			interceptors.add(new SelectiveInterceptor(handler, null));
+		}
+		setInvocationIntercepters(interfaceClass, interceptors);
+	}
+
+	@Override
+	public void addInvocationIntercepter(Class<?> interfaceClass, InvocationHandler interceptor) {
+		addInvocationIntercepter(interfaceClass, interceptor, null);
+	}
+
+	@Override
+	public void addInvocationIntercepter(Class<?> interfaceClass, int position, InvocationHandler interceptor) {
+		addInvocationIntercepter(interfaceClass, position, interceptor, null);
+	}
+
+	@Override
+	public void addInvocationIntercepter(Class<?> interfaceClass, InvocationHandler interceptor, MethodSelector selector) {
+		addInvocationIntercepter(interfaceClass, getInvocationIntercepters(interfaceClass).size(), interceptor, selector);
+	}
+
 	@Override
-	public void setInvocationIntercepter(Class<?> interfaceClass, InvocationHandler handler) {
+	public synchronized void addInvocationIntercepter(Class<?> interfaceClass, int position, InvocationHandler interceptor, MethodSelector selector) {
 		this.checkInterfaceValidity(interfaceClass);
-		invocationHandlers.put(interfaceClass, handler);
+		if (interceptor == null) {
+			throw new NullPointerException("intercepter can not be null");
+		}
+		List<SelectiveInterceptor> interceptors = getSelectiveInterceptors(interfaceClass);
+		interceptors.add(position, new SelectiveInterceptor(interceptor, selector));
+		setInvocationIntercepters(interfaceClass, interceptors);
+	}
+
+	@Override
+	public synchronized boolean removeInvocationIntercepter(Class<?> interfaceClass, InvocationHandler interceptor) {
+		List<SelectiveInterceptor> interceptors = getSelectiveInterceptors(interfaceClass);
+		for (int i = 0; i < interceptors.size(); i++) {
+			if (interceptors.get(i).interceptor.equals(interceptor)) {
+				interceptors.remove(i);
+				setInvocationIntercepters(interfaceClass, interceptors);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public List<InvocationHandler> getInvocationIntercepters(Class<?> interfaceClass) {
+		List<InvocationHandler> retval = new ArrayList<InvocationHandler>();
+		for (SelectiveInterceptor selectiveInterceptor : getSelectiveInterceptors(interfaceClass)) {
+			retval.add(selectiveInterceptor.interceptor);
+		}
+		return retval;
+	}
+
+	private List<SelectiveInterceptor> getSelectiveInterceptors(Class<?> interfaceClass) {
+		InterfaceInterceptors interceptors = interceptorsByInterface.get(interfaceClass);
+		return interceptors != null ? new ArrayList<SelectiveInterceptor>(interceptors.interceptors) : new ArrayList<SelectiveInterceptor>();
+	}
+
+	private void setInvocationIntercepters(Class<?> interfaceClass, List<SelectiveInterceptor> interceptors) {
+		HashMap<Class<?>, InterfaceInterceptors> newInterceptorsByInterface = new HashMap<Class<?>, InterfaceInterceptors>(interceptorsByInterface);
+		if (interceptors.isEmpty()) {
+			newInterceptorsByInterface.remove(interfaceClass);
+		} else {
+			newInterceptorsByInterface.put(interfaceClass, new InterfaceInterceptors(interfaceClass, interceptors));
+		}
+		interceptorsByInterface = newInterceptorsByInterface;
+		updateDispatchTables();
+	}
+
+	private void updateDispatchTables() {
+		for (InterfaceDispatcher interfaceDispatcher : dispatchersByInterface.values()) {
+			interfaceDispatcher.update();
+		}
+	}
+
+	/**
+	 * @param interfaceClass interface of the proxy
+	 * @param method
+	 * @return the intercepters for invocations of the method through a proxy for the interface, or null
+	 */
+	private InterceptorChain getInterceptorChain(Class<?> interfaceClass, Method method) {
+		Map<Class<?>, InterfaceInterceptors> interceptorsByInterface = this.interceptorsByInterface;
+		//get intercepters for specific proxy interface
+		InterfaceInterceptors interceptors = interfaceClass != null ? interceptorsByInterface.get(interfaceClass) : null;
+		InterceptorChain chain = interceptors != null ? interceptors.getChain(method) : null;
+		if (chain == null) {
+			//get intercepters for interface that declares invoked method
+			interceptors = interceptorsByInterface.get(method.getDeclaringClass());
+			chain = interceptors != null ? interceptors.getChain(method) : null;
+		}
+		return chain;
 	}
 
+	/**
+	 * Invoked by parties that use the component itself as InvocationHandler, such as MethodInvocation.
+	 * Proxies created by createProxy dispatch through a precomputed table instead.
+	 */
 	@Override
 	public Object invoke(Object proxy, Method method, Object[] parameters)
 			throws Throwable {
 
-		//get handler for specific proxy interface
-		InvocationHandler handler = null;
 		Class<?>[] interfaces = proxy.getClass().getInterfaces();
-		if(interfaces.length > 0) {
-			handler = invocationHandlers.get(interfaces[0]);
-		}
+		InterceptorChain chain = getInterceptorChain(interfaces.length > 0 ? interfaces[0] : null, method);
 		try {
-			if (handler == null) {
-				//get handler for interface that declares invoked method
-				handler = invocationHandlers.get(method.getDeclaringClass());
-			}
-			if (handler != null) {
-				return handler.invoke(implementation, method, parameters);
-			} else return method.invoke(implementation, parameters);
+			if (chain != null) {
+				return chain.invoke(method, parameters);
+			} else return dispatcher.invoke(method, parameters);
 		} catch (Throwable t) {
-			while ((t instanceof UndeclaredThrowableException || t instanceof InvocationTargetException) && (t = t.getCause()) != null) {}
-			throw t;
+			throw unwrap(t);
+		}
+	}
+
+	private static Throwable unwrap(Throwable t) {
+		while ((t instanceof UndeclaredThrowableException || t instanceof InvocationTargetException) && t.getCause() != null) {
+			t = t.getCause();
 		}
+		return t;
 	}
 
+	/**
+	 * The method that is resolved for a method name and the classes of the arguments
+	 * is cached per implementation class, along with the arguments that need conversion.
+	 * Subsequent invocations with arguments of the same classes are dispatched directly,
+	 * unless an argument can not be converted, in which case the method is resolved anew.
+	 */
 	@Override
 	public Object invoke(String methodName, Object... parameters) throws InvocationTargetException, NoSuchMethodException, IllegalArgumentException {
+		Map<DynamicInvocationKey, ResolvedInvocation> resolvedInvocations = RESOLVED_INVOCATIONS.get(implementation.getClass());
+		DynamicInvocationKey key = new DynamicInvocationKey(methodName, parameters);
+		ResolvedInvocation resolvedInvocation = resolvedInvocations.get(key);
+		if (resolvedInvocation != null) {
+			Object[] arguments = resolvedInvocation.convertArguments(parameters);
+			if (arguments != null) {
+				return invokeResolved(resolvedInvocation.method, arguments);
+			}
+		}
 		MethodInvocation invocation = new MethodInvocation(this, implementation, methodName,
 				getInterfaceMethodsByName(methodName, parameters.length).toArray(new Method[0]), parameters);
-		return invocation.invoke();
+		Object retval = invocation.invoke();
+		resolvedInvocations.put(key, new ResolvedInvocation(invocation.getInvokedMethod(), key.argumentTypes));
+		return retval;
+	}
+
+	private Object invokeResolved(Method method, Object[] arguments) throws InvocationTargetException {
+		try {
+			return invoke(implementation, method, arguments);
+		} catch (InvocationTargetException e) {
+			throw e;
+		} catch (IllegalArgumentException e) {
+			throw e;
+		} catch (Throwable t) {
+			throw new InvocationTargetException(t);
+		}
 	}
 
 	private Set<Method> getInterfaceMethodsByName(String methodName, int nrofParameters) {
 		Set<Method> retval = new HashSet<Method>();
 		for (Class<?> clasz : interfaces) {
-			retval.addAll(ReflectionSupport.getMethodsByName(clasz, methodName, nrofParameters));
+			retval.addAll(ReflectionSupport.getMethodIndex(clasz).getMethods(methodName, nrofParameters));
 		}
 		return retval;
 	}
 
 	@Override
-	public Set<Class<?>> getInjectedInterfaces(String componentId) {
+	public synchronized Set<Class<?>> getInjectedInterfaces(String componentId) {
 		Set<Class<?>> retval = new HashSet<Class<?>>();
 		if (injectedProxyTypesByComponentId.containsKey(componentId)) {
 			retval.addAll(injectedProxyTypesByComponentId.get(componentId));
@@ -355,12 +1038,12 @@ public class StandardComponent implements Component, InvocationHandler {
 	}
 
 	public boolean equals(Object other) {
-		return ((other instanceof StandardComponent) && ((StandardComponent) other).implementation == implementation) ||
-				other == implementation;
+		return ((other instanceof StandardComponent) && ((StandardComponent) other).originalImplementation == originalImplementation) ||
+				other == originalImplementation;
 	}
 
 	public int hashCode() {
-		return implementation.hashCode();
+		return originalImplementation.hashCode();
 	}
 
 	public String toString() {
@@ -373,9 +1056,403 @@ public class StandardComponent implements Component, InvocationHandler {
 		return interfaceClass.isAssignableFrom(implementation.getClass());
 	}
 
+	/**
+	 * Resolved destination of invocations of a particular method through a proxy.
+	 */
+	private class MethodTarget {
+
+		private final Method method;
+		private final InterceptorChain interceptors;
+		private final MethodHandle handle;
+
+		private MethodTarget(Method method, InterceptorChain interceptors) {
+			this.method = method;
+			this.interceptors = interceptors;
+			this.handle = interceptors == null ? dispatcher.getHandle(method) : null;
+		}
+
+		/**
+		 * @param arguments arguments that match the parameter types exactly, as passed by a proxy
+		 */
+		private Object invoke(Object[] arguments) throws Throwable {
+			try {
+				if (interceptors != null) {
+					return interceptors.invoke(method, arguments);
+				}
+				return (Object) handle.invokeExact(arguments);
+			} catch (Throwable t) {
+				throw unwrap(t);
+			}
+		}
+	}
+
+	/**
+	 * Dispatches invocations through proxies for a particular interface.
+	 * Serves as InvocationHandler for java.lang.reflect.Proxy instances and
+	 * provides the InterceptionPoint for generated proxies.
+	 * <p/>
+	 * The targets of all methods are resolved in advance and published as immutable
+	 * table whenever intercepters change, so that an invocation takes a single lookup
+	 * and always sees a consistent table.
+	 */
+	private class InterfaceDispatcher implements InvocationHandler {
+
+		private final Class<?> interfaceClass;
+		private Method[] indexedMethods;
+		private volatile DispatchTable table;
+		private TargetBinding binding;
+
+		private InterfaceDispatcher(Class<?> interfaceClass) {
+			this.interfaceClass = interfaceClass;
+			update();
+		}
+
+		/**
+		 * Enables lookup of targets by index for generated proxies.
+		 *
+		 * @param proxyClass
+		 * @param target implementation the generated proxy refers to
+		 * @return interception point for generated proxies that refer to the target
+		 */
+		private synchronized TargetBinding bind(ProxyClass<?> proxyClass, Object target) {
+			if (indexedMethods == null) {
+				indexedMethods = proxyClass.getMethods();
+				update();
+			}
+			if (binding == null || binding.target != target) {
+				binding = new TargetBinding(this, target);
+			}
+			//the implementation may have been replaced after the target was obtained
+			binding.stale = target != implementation;
+			return binding;
+		}
+
+		/**
+		 * Makes generated proxies that refer to a replaced implementation dispatch through the table.
+		 */
+		private synchronized void unbind() {
+			if (binding != null) {
+				binding.stale = true;
+			}
+		}
+
+		/**
+		 * Tables are built one at a time, so that the last table published
+		 * reflects the latest intercepters.
+		 */
+		private synchronized void update() {
+			table = new DispatchTable(this);
+		}
+
+		/**
+		 * @return true if invocations of at least one method are intercepted
+		 */
+		private boolean isIntercepted() {
+			return table.intercepted;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] arguments) throws Throwable {
+			MethodTarget target = table.targetsByMethod.get(method);
+			if (target == null) {
+				target = new MethodTarget(method, getInterceptorChain(interfaceClass, method));
+			}
+			return target.invoke(arguments);
+		}
+
+	}
+
+	/**
+	 * Interception point of generated proxies that refer to a particular implementation.
+	 * Once the implementation is replaced, all their invocations are intercepted
+	 * and dispatched to the current implementation.
+	 */
+	private static class TargetBinding extends InterceptionPoint {
+
+		private final InterfaceDispatcher interfaceDispatcher;
+		private final Object target;
+		private volatile boolean stale;
+
+		private TargetBinding(InterfaceDispatcher interfaceDispatcher, Object target) {
+			this.interfaceDispatcher = interfaceDispatcher;
+			this.target = target;
+		}
+
+		@Override
+		public boolean isIntercepted(int methodIndex) {
+			return stale || interfaceDispatcher.table.targetsByIndex[methodIndex].interceptors != null;
+		}
+
+		@Override
+		public Object intercept(Object proxy, int methodIndex, Object[] arguments) throws Throwable {
+			return interfaceDispatcher.table.targetsByIndex[methodIndex].invoke(arguments);
+		}
+	}
+
+	private class DispatchTable {
+
+		private final Map<Method, MethodTarget> targetsByMethod = new HashMap<Method, MethodTarget>();
+		private final MethodTarget[] targetsByIndex;
+		private boolean intercepted;
+
+		private DispatchTable(InterfaceDispatcher interfaceDispatcher) {
+			Class<?> interfaceClass = interfaceDispatcher.interfaceClass;
+			List<Method> methods = new ArrayList<Method>(Arrays.asList(interfaceClass.getMethods()));
+			try {
+				methods.add(Object.class.getMethod("equals", Object.class));
+				methods.add(Object.class.getMethod("hashCode"));
+				methods.add(Object.class.getMethod("toString"));
+			} catch (NoSuchMethodException e) {
+				throw new Error(e);
+			}
+			for (Method method : methods) {
+				MethodTarget target = new MethodTarget(method, getInterceptorChain(interfaceClass, method));
+				targetsByMethod.put(method, target);
+				intercepted |= target.interceptors != null;
+			}
+			Method[] indexedMethods = interfaceDispatcher.indexedMethods;
+			targetsByIndex = new MethodTarget[indexedMethods != null ? indexedMethods.length : 0];
+			for (int i = 0; i < targetsByIndex.length; i++) {
+				targetsByIndex[i] = targetsByMethod.get(indexedMethods[i]);
+			}
+		}
+	}
+
+	/**
+	 * Method name and classes of the arguments of an invocation by name.
+	 */
+	private static class DynamicInvocationKey {
+
+		private final String methodName;
+		private final Class<?>[] argumentTypes;
+		private final int hashCode;
+
+		private DynamicInvocationKey(String methodName, Object[] arguments) {
+			this.methodName = methodName;
+			this.argumentTypes = new Class<?>[arguments.length];
+			for (int i = 0; i < arguments.length; i++) {
+				argumentTypes[i] = arguments[i] != null ? arguments[i].getClass() : null;
+			}
+			this.hashCode = 31 * methodName.hashCode() + Arrays.hashCode(argumentTypes);
+		}
+
+		public boolean equals(Object other) {
+			if (!(other instanceof DynamicInvocationKey)) {
+				return false;
+			}
+			DynamicInvocationKey otherKey = (DynamicInvocationKey) other;
+			return methodName.equals(otherKey.methodName) && Arrays.equals(argumentTypes, otherKey.argumentTypes);
+		}
+
+		public int hashCode() {
+			return hashCode;
+		}
+	}
+
+	/**
+	 * Method resolved for an invocation by name, plus the positions
+	 * of arguments that must be converted to match the parameter types.
+	 */
+	private static class ResolvedInvocation {
+
+		private final Method method;
+		private final Class<?>[] parameterTypes;
+		private final boolean[] conversionRequired;
+
+		private ResolvedInvocation(Method method, Class<?>[] argumentTypes) {
+			this.method = method;
+			this.parameterTypes = method.getParameterTypes();
+			this.conversionRequired = new boolean[argumentTypes.length];
+			for (int i = 0; i < argumentTypes.length; i++) {
+				conversionRequired[i] = argumentTypes[i] != null && !parameterTypes[i].isAssignableFrom(argumentTypes[i]);
+			}
+		}
+
+		/**
+		 * @param arguments
+		 * @return converted arguments, or null if an argument can not be converted
+		 */
+		private Object[] convertArguments(Object[] arguments) {
+			Object[] convertedArguments = arguments.clone();
+			for (int i = 0; i < arguments.length; i++) {
+				if (conversionRequired[i]) {
+					try {
+						convertedArguments[i] = Converter.convertToObject(arguments[i], parameterTypes[i]);
+					} catch (IllegalArgumentException e) {
+						return null;
+					}
+				}
+			}
+			return convertedArguments;
+		}
+	}
+
+	/**
+	 * Intercepter that applies to the methods matched by its selector, or to all methods if it has none.
+	 */
+	private static class SelectiveInterceptor {
+
+		private final InvocationHandler interceptor;
+		private final MethodSelector selector;
+
+		private SelectiveInterceptor(InvocationHandler interceptor, MethodSelector selector) {
+			this.interceptor = interceptor;
+			this.selector = selector;
+		}
+
+		private boolean appliesTo(Method method) {
+			return selector == null || selector.matches(method);
+		}
+	}
+
+	/**
+	 * Intercepters registered for an interface.
+	 * Selectors are evaluated once per method; methods selected by the same
+	 * intercepters share a chain.
+	 */
+	private class InterfaceInterceptors {
+
+		private final Class<?> interfaceClass;
+		private final List<SelectiveInterceptor> interceptors;
+		private final Map<Method, List<InvocationHandler>> selectionsByMethod = new ConcurrentHashMap<Method, List<InvocationHandler>>();
+		private final Map<List<InvocationHandler>, InterceptorChain> chainsBySelection = new ConcurrentHashMap<List<InvocationHandler>, InterceptorChain>();
+
+		private InterfaceInterceptors(Class<?> interfaceClass, List<SelectiveInterceptor> interceptors) {
+			this.interfaceClass = interfaceClass;
+			this.interceptors = interceptors;
+		}
+
+		/**
+		 * @param method
+		 * @return the chain of intercepters that apply to the method, or null if none applies
+		 */
+		private InterceptorChain getChain(Method method) {
+			List<InvocationHandler> selection = selectionsByMethod.get(method);
+			if (selection == null) {
+				selection = new ArrayList<InvocationHandler>();
+				for (SelectiveInterceptor selectiveInterceptor : interceptors) {
+					if (selectiveInterceptor.appliesTo(method)) {
+						selection.add(selectiveInterceptor.interceptor);
+					}
+				}
+				selectionsByMethod.put(method, selection);
+			}
+			if (selection.isEmpty()) {
+				return null;
+			}
+			InterceptorChain chain = chainsBySelection.get(selection);
+			if (chain == null) {
+				chain = new InterceptorChain(interfaceClass, selection);
+				chainsBySelection.put(selection, chain);
+			}
+			return chain;
+		}
+	}
+
+	/**
+	 * Intercepters for an interface, composed once into a sequence of links.
+	 * Every intercepter receives, as proxy, the link to the next intercepter
+	 * or, in case of the last one, the implementation. An invocation therefore passes
+	 * from intercepter to intercepter without consulting the list of intercepters.
+	 */
+	private class InterceptorChain {
+
+		private final InvocationHandler head;
+		private final Object next;
+
+		private InterceptorChain(Class<?> interfaceClass, List<InvocationHandler> interceptors) {
+			Object next = implementation;
+			for (int i = interceptors.size() - 1; i > 0; i--) {
+				next = createChainLink(interfaceClass, interceptors.get(i), next);
+			}
+			this.head = interceptors.get(0);
+			this.next = next;
+		}
+
+		private Object invoke(Method method, Object[] arguments) throws Throwable {
+			return head.invoke(next, method, arguments);
+		}
+	}
+
+	private <T> Object createChainLink(Class<T> interfaceClass, InvocationHandler interceptor, Object next) {
+		ProxyClass<T> proxyClass = ProxyClassGenerator.getProxyClass(implementation.getClass(), interfaceClass);
+		if (proxyClass != null) {
+			return proxyClass.newInstance(interfaceClass.cast(implementation), new ChainLink(interceptor, next, proxyClass.getMethods()));
+		}
+		return Proxy.newProxyInstance(interfaceClass.getClassLoader(), new Class<?>[]{interfaceClass}, new ChainLink(interceptor, next, null));
+	}
+
+	/**
+	 * Passes every invocation of a link proxy to an intercepter.
+	 */
+	private static class ChainLink extends InterceptionPoint implements InvocationHandler {
+
+		private final InvocationHandler interceptor;
+		private final Object next;
+		private final Method[] methods;
+
+		private ChainLink(InvocationHandler interceptor, Object next, Method[] methods) {
+			this.interceptor = interceptor;
+			this.next = next;
+			this.methods = methods;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] arguments) throws Throwable {
+			return interceptor.invoke(next, method, arguments);
+		}
+
+		@Override
+		public boolean isIntercepted(int methodIndex) {
+			return true;
+		}
+
+		@Override
+		public Object intercept(Object proxy, int methodIndex, Object[] arguments) throws Throwable {
+			return interceptor.invoke(next, methods[methodIndex], arguments);
+		}
+	}
+
 	private void addFacadeByType(Collection<Class<?>> interfaces, Facade facade, String componentId) {
 		for(Class<?> interfaceX : interfaces) {
-			injectedProxiesByType.put(interfaceX, facade.getProxy(componentId, interfaceX));
+			injectedProxiesByType.put(interfaceX, getReference(facade, componentId, interfaceX));
+		}
+	}
+
+	private Object getReference(Facade facade, String componentId, Class<?> interfaceClass) {
+		if (lazyReferences) {
+			return Proxy.newProxyInstance(interfaceClass.getClassLoader(), new Class<?>[]{interfaceClass},
+					new LazyReference(facade, componentId, interfaceClass));
+		}
+		return facade.getProxy(componentId, interfaceClass);
+	}
+
+	/**
+	 * Placeholder for a reference that obtains the actual proxy from the facade
+	 * on its first invocation. If several threads resolve the reference at the same
+	 * time, the first proxy published is used by all of them.
+	 */
+	private static class LazyReference implements InvocationHandler {
+
+		private final Facade facade;
+		private final String componentId;
+		private final Class<?> interfaceClass;
+		private final AtomicReference<MethodHandleDispatcher> target = new AtomicReference<MethodHandleDispatcher>();
+
+		private LazyReference(Facade facade, String componentId, Class<?> interfaceClass) {
+			this.facade = facade;
+			this.componentId = componentId;
+			this.interfaceClass = interfaceClass;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] arguments) throws Throwable {
+			MethodHandleDispatcher resolvedTarget = target.get();
+			if (resolvedTarget == null) {
+				target.compareAndSet(null, new MethodHandleDispatcher(facade.getProxy(componentId, interfaceClass)));
+				resolvedTarget = target.get();
+			}
+			return resolvedTarget.invoke(method, arguments);
 		}
 	}
 }
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2011-2014 Jeroen Meetsma - IJsberg Automatisering BV
+ *
+ * This file is part of Iglu.
+ *
+ * Iglu is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Iglu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Iglu.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.ijsberg.iglu.configuration.module;
+
+import org.ijsberg.iglu.configuration.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Orders the start of a number of components along their dependencies.
+ * <p/>
+ * A component depends on the components it has a setter for and on the
+ * components it registers as listener. Components are divided in levels:
+ * a component is placed one level above the highest level of its dependencies.
+ * Components that depend on each other, directly or through others, form a group
+ * that is placed on a single level and started one by one, in order of registration.
+ */
+class StartupPlan {
+
+	private final Map<String, Component> componentsById;
+	private final Map<String, Set<String>> dependenciesById = new HashMap<String, Set<String>>();
+	//components that depend on each other share the same group
+	private final Map<String, Integer> groupById = new HashMap<String, Integer>();
+	//groups in order of dependency, members in order of registration
+	private final List<List<String>> membersByGroup = new ArrayList<List<String>>();
+	//members of a group are listed consecutively
+	private final List<List<String>> levels = new ArrayList<List<String>>();
+
+	StartupPlan(Map<String, Component> componentsById) {
+		this.componentsById = componentsById;
+		ComponentMatchIndex matchIndex = new ComponentMatchIndex();
+		for (String componentId : componentsById.keySet()) {
+			matchIndex.add(componentId, componentsById.get(componentId));
+		}
+		for (String componentId : componentsById.keySet()) {
+			Set<String> dependencies = new LinkedHashSet<String>(matchIndex.getReferencedIds(componentId));
+			dependencies.addAll(matchIndex.getRegisteredIds(componentId));
+			dependenciesById.put(componentId, dependencies);
+		}
+		groupDependentComponents();
+		assignLevels();
+	}
+
+	/**
+	 * Finds strongly connected components (Tarjan) without recursion,
+	 * so that long chains of dependencies do not exhaust the stack.
+	 * Groups are found dependencies first.
+	 */
+	private void groupDependentComponents() {
+		Map<String, Integer> indexById = new HashMap<String, Integer>();
+		Map<String, Integer> lowLinkById = new HashMap<String, Integer>();
+		Set<String> onStack = new HashSet<String>();
+		Deque<String> stack = new ArrayDeque<String>();
+		Deque<String> path = new ArrayDeque<String>();
+		Deque<Iterator<String>> iterators = new ArrayDeque<Iterator<String>>();
+		int nrofGroups = 0;
+
+		for (String rootId : componentsById.keySet()) {
+			if (indexById.containsKey(rootId)) {
+				continue;
+			}
+			path.push(rootId);
+			iterators.push(dependenciesById.get(rootId).iterator());
+			indexById.put(rootId, indexById.size());
+			lowLinkById.put(rootId, indexById.get(rootId));
+			stack.push(rootId);
+			onStack.add(rootId);
+
+			while (!path.isEmpty()) {
+				String componentId = path.peek();
+				Iterator<String> dependencies = iterators.peek();
+				if (dependencies.hasNext()) {
+					String dependencyId = dependencies.next();
+					if (!indexById.containsKey(dependencyId)) {
+						path.push(dependencyId);
+						iterators.push(dependenciesById.get(dependencyId).iterator());
+						indexById.put(dependencyId, indexById.size());
+						lowLinkById.put(dependencyId, indexById.get(dependencyId));
+						stack.push(dependencyId);
+						onStack.add(dependencyId);
+					} else if (onStack.contains(dependencyId)) {
+						lowLinkById.put(componentId, Math.min(lowLinkById.get(componentId), indexById.get(dependencyId)));
+					}
+				} else {
+					path.pop();
+					iterators.pop();
+					if (!path.isEmpty()) {
+						String dependentId = path.peek();
+						lowLinkById.put(dependentId, Math.min(lowLinkById.get(dependentId), lowLinkById.get(componentId)));
+					}
+					if (lowLinkById.get(componentId).equals(indexById.get(componentId))) {
+						String memberId;
+						do {
+							memberId = stack.pop();
+							onStack.remove(memberId);
+							groupById.put(memberId, nrofGroups);
+						} while (!memberId.equals(componentId));
+						nrofGroups++;
+					}
+				}
+			}
+		}
+		for (int group = 0; group < nrofGroups; group++) {
+			membersByGroup.add(new ArrayList<String>());
+		}
+		for (String componentId : componentsById.keySet()) {
+			membersByGroup.get(groupById.get(componentId)).add(componentId);
+		}
+	}
+
+	private void assignLevels() {
+		int[] levelByGroup = new int[membersByGroup.size()];
+		for (int group = 0; group < membersByGroup.size(); group++) {
+			int level = 0;
+			for (String componentId : membersByGroup.get(group)) {
+				for (String dependencyId : getExternalDependencies(componentId)) {
+					level = Math.max(level, levelByGroup[groupById.get(dependencyId)] + 1);
+				}
+			}
+			levelByGroup[group] = level;
+			while (levels.size() <= level) {
+				levels.add(new ArrayList<String>());
+			}
+			levels.get(level).addAll(membersByGroup.get(group));
+		}
+	}
+
+	/**
+	 * @param componentId
+	 * @return dependencies outside the group of the component
+	 */
+	private Set<String> getExternalDependencies(String componentId) {
+		Set<String> retval = new LinkedHashSet<String>();
+		for (String dependencyId : dependenciesById.get(componentId)) {
+			if (!groupById.get(dependencyId).equals(groupById.get(componentId))) {
+				retval.add(dependencyId);
+			}
+		}
+		return retval;
+	}
+
+	List<List<String>> getLevels() {
+		return levels;
+	}
+
+	/**
+	 * Sets properties of the components level by level. The groups of a level
+	 * are dealt with in parallel, after all components of lower levels are done.
+	 * Components within a group are dealt with one after the other.
+	 *
+	 * @param propertiesById
+	 * @param pool
+	 * @return timing of the start
+	 * @throws RuntimeException whatever setProperties throws; components on higher levels are not started
+	 */
+	StartupReport execute(final Map<String, Properties> propertiesById, ForkJoinPool pool) {
+		final Map<String, Long> durationById = new ConcurrentHashMap<String, Long>();
+		List<Long> levelDurations = new ArrayList<Long>();
+		long start = System.nanoTime();
+		for (List<String> level : levels) {
+			long levelStart = System.nanoTime();
+			List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
+			for (int i = 0; i < level.size(); i += membersByGroup.get(groupById.get(level.get(i))).size()) {
+				final List<String> members = membersByGroup.get(groupById.get(level.get(i)));
+				tasks.add(pool.submit(new Runnable() {
+					public void run() {
+						for (String componentId : members) {
+							long componentStart = System.nanoTime();
+							Properties properties = propertiesById.get(componentId);
+							if (properties != null) {
+								componentsById.get(componentId).setProperties(properties);
+							}
+							durationById.put(componentId, properties != null ? System.nanoTime() - componentStart : 0L);
+						}
+					}
+				}));
+			}
+			for (ForkJoinTask<?> task : tasks) {
+				task.join();
+			}
+			levelDurations.add(System.nanoTime() - levelStart);
+		}
+		return new StartupReport(levels, levelDurations, durationById, getCriticalPath(durationById), System.nanoTime() - start);
+	}
+
+	/**
+	 * @param durationById
+	 * @return the chain of dependencies that takes longest to start, dependencies first;
+	 * within a group, each member is preceded by the member started before
+	 */
+	private List<String> getCriticalPath(Map<String, Long> durationById) {
+		Map<String, Long> finishById = new HashMap<String, Long>();
+		Map<String, String> predecessorById = new HashMap<String, String>();
+		String lastId = null;
+		for (List<String> members : membersByGroup) {
+			long start = 0;
+			String predecessorId = null;
+			for (String componentId : members) {
+				for (String dependencyId : getExternalDependencies(componentId)) {
+					if (finishById.get(dependencyId) >= start) {
+						start = finishById.get(dependencyId);
+						predecessorId = dependencyId;
+					}
+				}
+			}
+			for (String componentId : members) {
+				long finish = start + durationById.get(componentId);
+				finishById.put(componentId, finish);
+				if (predecessorId != null) {
+					predecessorById.put(componentId, predecessorId);
+				}
+				if (lastId == null || finish > finishById.get(lastId)) {
+					lastId = componentId;
+				}
+				start = finish;
+				predecessorId = componentId;
+			}
+		}
+		LinkedList<String> retval = new LinkedList<String>();
+		for (String componentId = lastId; componentId != null; componentId = predecessorById.get(componentId)) {
+			retval.addFirst(componentId);
+		}
+		return retval;
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2011-2014 Jeroen Meetsma - IJsberg Automatisering BV
+ *
+ * This file is part of Iglu.
+ *
+ * Iglu is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Iglu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Iglu.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.ijsberg.iglu.configuration.module;
+
+import java.util.*;
+
+/**
+ * Timing of a parallel start of components (see StandardCluster.startAll).
+ */
+public class StartupReport {
+
+	private final List<List<String>> levels;
+	private final List<Long> levelDurations;
+	private final Map<String, Long> durationById;
+	private final List<String> criticalPath;
+	private final long duration;
+
+	StartupReport(List<List<String>> levels, List<Long> levelDurations, Map<String, Long> durationById,
+				  List<String> criticalPath, long duration) {
+		this.levels = Collections.unmodifiableList(levels);
+		this.levelDurations = Collections.unmodifiableList(levelDurations);
+		this.durationById = Collections.unmodifiableMap(new HashMap<String, Long>(durationById));
+		this.criticalPath = Collections.unmodifiableList(criticalPath);
+		this.duration = duration;
+	}
+
+	/**
+	 * @return IDs of components per level; components on the same level were started in parallel
+	 */
+	public List<List<String>> getLevels() {
+		return levels;
+	}
+
+	/**
+	 * @param level
+	 * @return nanoseconds it took to start the components on a level
+	 */
+	public long getLevelDuration(int level) {
+		return levelDurations.get(level);
+	}
+
+	/**
+	 * @param componentId
+	 * @return nanoseconds it took to set the properties of a component
+	 */
+	public long getDuration(String componentId) {
+		return durationById.get(componentId);
+	}
+
+	/**
+	 * @return IDs of the chain of dependent components that took longest to start, dependencies first;
+	 * the start can not take less than the sum of their durations
+	 */
+	public List<String> getCriticalPath() {
+		return criticalPath;
+	}
+
+	/**
+	 * @return nanoseconds the components on the critical path took to start
+	 */
+	public long getCriticalPathDuration() {
+		long retval = 0;
+		for (String componentId : criticalPath) {
+			retval += durationById.get(componentId);
+		}
+		return retval;
+	}
+
+	/**
+	 * @return nanoseconds the start took
+	 */
+	public long getDuration() {
+		return duration;
+	}
+
+	public String toString() {
+		StringBuffer retval = new StringBuffer("started " + durationById.size() + " components in " + levels.size() +
+				" levels in " + (duration / 1000000) + " ms");
+		retval.append(", critical path " + (getCriticalPathDuration() / 1000000) + " ms: ");
+		for (Iterator<String> i = criticalPath.iterator(); i.hasNext(); ) {
+			String componentId = i.next();
+			retval.append(componentId + " (" + (durationById.get(componentId) / 1000000) + " ms)");
+			if (i.hasNext()) {
+				retval.append(" -> ");
+			}
+		}
+		return retval.toString();
+	}
+}
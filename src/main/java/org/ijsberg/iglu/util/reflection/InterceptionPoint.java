@@ -0,0 +1,47 @@
+/*
+ * Copyright 2011-2014 Jeroen Meetsma - IJsberg Automatisering BV
+ *
+ * This file is part of Iglu.
+ *
+ * Iglu is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Iglu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Iglu.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.ijsberg.iglu.util.reflection;
+
+/**
+ * Is consulted by instances of generated proxy classes (see ProxyClassGenerator).
+ * A generated proxy invokes its target directly, unless the interception point
+ * reports that invocations of a method must be intercepted.
+ * <p/>
+ * Methods are identified by their index in ProxyClass.getMethods().
+ */
+public abstract class InterceptionPoint {
+
+	/**
+	 * Is invoked on every call through a generated proxy and must therefore be cheap.
+	 *
+	 * @param methodIndex
+	 * @return true if invocations of the method must be passed to intercept
+	 */
+	public abstract boolean isIntercepted(int methodIndex);
+
+	/**
+	 * @param proxy       the proxy that is invoked
+	 * @param methodIndex
+	 * @param arguments   arguments, primitives boxed, or null if the method has no parameters
+	 * @return the return value, primitives boxed
+	 * @throws Throwable whatever the intercepted invocation throws
+	 */
+	public abstract Object intercept(Object proxy, int methodIndex, Object[] arguments) throws Throwable;
+}
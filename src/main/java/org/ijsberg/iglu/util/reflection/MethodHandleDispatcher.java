@@ -0,0 +1,180 @@
+/*
+ * Copyright 2011-2014 Jeroen Meetsma - IJsberg Automatisering BV
+ *
+ * This file is part of Iglu.
+ *
+ * Iglu is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Iglu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Iglu.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.ijsberg.iglu.util.reflection;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Invokes methods on a target object by means of method handles.
+ * Each method is resolved once to a handle bound to the target;
+ * subsequent invocations reuse that handle instead of going through Method.invoke.
+ * <p/>
+ * Exceptions thrown by the target are passed on as is, so they
+ * are not wrapped in an InvocationTargetException.
+ */
+public class MethodHandleDispatcher {
+
+	private static final MethodType GENERIC_INVOCATION_TYPE = MethodType.methodType(Object.class, Object[].class);
+	private static final MethodHandle REFLECTIVE_INVOCATION;
+
+	static {
+		try {
+			MethodHandle methodInvoke = MethodHandles.lookup().findVirtual(Method.class, "invoke",
+					MethodType.methodType(Object.class, Object.class, Object[].class));
+			MethodHandle rethrowCause = MethodHandles.lookup().findStatic(MethodHandleDispatcher.class, "rethrowCause",
+					MethodType.methodType(Object.class, InvocationTargetException.class));
+			REFLECTIVE_INVOCATION = MethodHandles.catchException(methodInvoke, InvocationTargetException.class,
+					MethodHandles.dropArguments(rethrowCause, 1, Method.class, Object.class, Object[].class));
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private final Object target;
+	private final ConcurrentHashMap<Method, Dispatch> dispatchByMethod = new ConcurrentHashMap<Method, Dispatch>();
+
+	/**
+	 * @param target object on which methods are invoked
+	 */
+	public MethodHandleDispatcher(Object target) {
+		if (target == null) {
+			throw new NullPointerException("target can not be null");
+		}
+		this.target = target;
+	}
+
+	/**
+	 * @return object on which methods are invoked
+	 */
+	public Object getTarget() {
+		return target;
+	}
+
+	/**
+	 * @param method
+	 * @param arguments arguments matching the parameter types of the method, may be null if there are none
+	 * @return whatever the method returns, primitives boxed
+	 * @throws IllegalArgumentException if the arguments do not match the parameter types
+	 * @throws Throwable                 whatever the invoked method throws
+	 */
+	public Object invoke(Method method, Object[] arguments) throws Throwable {
+		return getDispatch(method).invoke(arguments);
+	}
+
+	/**
+	 * @param method
+	 * @return a handle of type (Object[])Object that invokes the method on the target
+	 */
+	public MethodHandle getHandle(Method method) {
+		return getDispatch(method).handle;
+	}
+
+	private Dispatch getDispatch(Method method) {
+		Dispatch dispatch = dispatchByMethod.get(method);
+		if (dispatch == null) {
+			dispatch = new Dispatch(target, method);
+			dispatchByMethod.put(method, dispatch);
+		}
+		return dispatch;
+	}
+
+	/**
+	 * Creates a handle that invokes a method on a target object.
+	 * Falls back on reflective invocation if the method is not publicly accessible.
+	 *
+	 * @param target
+	 * @param method
+	 * @return a handle of type (Object[])Object that invokes the method on the target
+	 */
+	public static MethodHandle createHandle(Object target, Method method) {
+		if (!Modifier.isStatic(method.getModifiers()) && method.getDeclaringClass().isInstance(target)) {
+			try {
+				return MethodHandles.publicLookup().unreflect(method)
+						.bindTo(target)
+						.asSpreader(Object[].class, method.getParameterCount())
+						.asType(GENERIC_INVOCATION_TYPE);
+			} catch (IllegalAccessException e) {
+				//method or declaring class is not public
+			}
+		}
+		//Method.invoke applies (and reports) access checks and argument checks
+		return REFLECTIVE_INVOCATION.bindTo(method).bindTo(target);
+	}
+
+	private static Object rethrowCause(InvocationTargetException ite) throws Throwable {
+		throw ite.getCause();
+	}
+
+	/**
+	 * Resolved handle for a method.
+	 * Arguments that do not match the parameter types exactly, such as
+	 * primitives that need widening, are passed to Method.invoke,
+	 * which converts them or reports an IllegalArgumentException.
+	 */
+	private static class Dispatch {
+
+		private final Object target;
+		private final Method method;
+		private final MethodHandle handle;
+		private final Class<?>[] parameterTypes;
+		private final Class<?>[] argumentTypes;
+
+		private Dispatch(Object target, Method method) {
+			this.target = target;
+			this.method = method;
+			this.handle = createHandle(target, method);
+			this.parameterTypes = method.getParameterTypes();
+			this.argumentTypes = new Class<?>[parameterTypes.length];
+			for (int i = 0; i < parameterTypes.length; i++) {
+				argumentTypes[i] = MethodType.methodType(parameterTypes[i]).wrap().returnType();
+			}
+		}
+
+		private Object invoke(Object[] arguments) throws Throwable {
+			if (argumentsMatch(arguments)) {
+				return (Object) handle.invokeExact(arguments);
+			}
+			try {
+				return method.invoke(target, arguments);
+			} catch (InvocationTargetException ite) {
+				throw ite.getCause();
+			}
+		}
+
+		private boolean argumentsMatch(Object[] arguments) {
+			int nrofArguments = arguments != null ? arguments.length : 0;
+			if (nrofArguments != argumentTypes.length) {
+				return false;
+			}
+			for (int i = 0; i < nrofArguments; i++) {
+				if (arguments[i] == null ? parameterTypes[i].isPrimitive() : !argumentTypes[i].isInstance(arguments[i])) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
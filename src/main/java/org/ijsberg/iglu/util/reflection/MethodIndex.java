@@ -0,0 +1,102 @@
+/*
+ * Copyright 2011-2014 Jeroen Meetsma - IJsberg Automatisering BV
+ *
+ * This file is part of Iglu.
+ *
+ * Iglu is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Iglu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Iglu.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.ijsberg.iglu.util.reflection;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index of the public methods of a class (see Class.getMethods) by name and number of parameters.
+ * An index is immutable and can be shared by threads.
+ *
+ * @see ReflectionSupport#getMethodIndex(Class)
+ */
+public class MethodIndex {
+
+	private final Class<?> indexedClass;
+	private final Map<String, List<Method>[]> methodsByNameAndArity = new HashMap<String, List<Method>[]>();
+
+	MethodIndex(Class<?> indexedClass) {
+		this.indexedClass = indexedClass;
+		Map<String, List<List<Method>>> methodsByName = new HashMap<String, List<List<Method>>>();
+		for (Method method : indexedClass.getMethods()) {
+			List<List<Method>> methodsByArity = methodsByName.get(method.getName());
+			if (methodsByArity == null) {
+				methodsByArity = new ArrayList<List<Method>>();
+				methodsByName.put(method.getName(), methodsByArity);
+			}
+			int arity = method.getParameterTypes().length;
+			while (methodsByArity.size() <= arity) {
+				methodsByArity.add(new ArrayList<Method>(1));
+			}
+			methodsByArity.get(arity).add(method);
+		}
+		for (Map.Entry<String, List<List<Method>>> entry : methodsByName.entrySet()) {
+			//generic arrays can not be created
+			@SuppressWarnings({"unchecked", "rawtypes"})
+			List<Method>[] methodsByArity = new List[entry.getValue().size()];
+			for (int i = 0; i < methodsByArity.length; i++) {
+				List<Method> methods = entry.getValue().get(i);
+				methodsByArity[i] = methods.isEmpty() ? Collections.<Method>emptyList() : Collections.unmodifiableList(methods);
+			}
+			methodsByNameAndArity.put(entry.getKey(), methodsByArity);
+		}
+	}
+
+	/**
+	 * @return the class of which the methods are indexed
+	 */
+	public Class<?> getIndexedClass() {
+		return indexedClass;
+	}
+
+	/**
+	 * @param methodName
+	 * @param nrofParameters
+	 * @return an unmodifiable list of public methods with the given name and number of parameters
+	 */
+	public List<Method> getMethods(String methodName, int nrofParameters) {
+		List<Method>[] methodsByArity = methodsByNameAndArity.get(methodName);
+		if (methodsByArity == null || nrofParameters < 0 || nrofParameters >= methodsByArity.length) {
+			return Collections.emptyList();
+		}
+		return methodsByArity[nrofParameters];
+	}
+
+	/**
+	 * @return an unmodifiable set of the names of all public methods
+	 */
+	public Set<String> getMethodNames() {
+		return Collections.unmodifiableSet(methodsByNameAndArity.keySet());
+	}
+
+	/**
+	 * @param methodName
+	 * @return true if the class has at least one public method with the given name
+	 */
+	public boolean containsMethodName(String methodName) {
+		return methodsByNameAndArity.containsKey(methodName);
+	}
+}
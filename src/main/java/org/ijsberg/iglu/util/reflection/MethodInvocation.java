@@ -39,6 +39,7 @@ public class MethodInvocation {
 	private IllegalArgumentException failedInvocation = null;
 	private Object retval = null;
 	private boolean invocationSucceeded;
+	private Method invokedMethod;
 	private InvocationHandler invocationHandler;
 
 	public MethodInvocation(InvocationHandler invocationHandler, Object impl, String methodName, Method[] methodSubset, Object... arguments) {
@@ -78,6 +79,7 @@ public class MethodInvocation {
 
 		retval = null;
 		invocationSucceeded = false;
+		invokedMethod = null;
 
 		if (invocationHandler == null) {
 			tryInvokeExactSignature();
@@ -140,6 +142,7 @@ public class MethodInvocation {
 			} else {
 				retval = method.invoke(impl, alternativeInitArgs);
 			}
+			invokedMethod = method;
 		} catch (IllegalAccessException privateOrProtectedInvoked) {
 			//should be impossible since Class.getMethods returns only public methods
 			throw new RuntimeException("illegal (private or protected) method '" + method.getName() + "' invoked", privateOrProtectedInvoked);
@@ -147,6 +150,13 @@ public class MethodInvocation {
 	}
 
 
+	/**
+	 * @return the method that has been invoked successfully by the last invocation, or null
+	 */
+	public Method getInvokedMethod() {
+		return invokedMethod;
+	}
+
 	private Object invokeInvocationHandler(Object impl, Object[] initArgs, Method method) throws InvocationTargetException {
 		try {
 			retval = invocationHandler.invoke(impl, method, initArgs);
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2011-2014 Jeroen Meetsma - IJsberg Automatisering BV
+ *
+ * This file is part of Iglu.
+ *
+ * Iglu is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Iglu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Iglu.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.ijsberg.iglu.util.reflection;
+
+import java.lang.reflect.Method;
+
+/**
+ * Determines to which methods something, such as an intercepter, applies.
+ * Selectors are evaluated when invocations are bound to their targets,
+ * not on every invocation, so outcomes must not change over time.
+ *
+ * @see MethodSelectors
+ */
+public interface MethodSelector {
+
+	/**
+	 * @param method
+	 * @return true if the method is selected
+	 */
+	boolean matches(Method method);
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2011-2014 Jeroen Meetsma - IJsberg Automatisering BV
+ *
+ * This file is part of Iglu.
+ *
+ * Iglu is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Iglu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Iglu.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.ijsberg.iglu.util.reflection;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Creates common method selectors.
+ */
+public class MethodSelectors {
+
+	/**
+	 * @param methodNames
+	 * @return a selector for methods with one of the given names
+	 */
+	public static MethodSelector byName(String... methodNames) {
+		final Set<String> names = new HashSet<String>(Arrays.asList(methodNames));
+		return new MethodSelector() {
+			public boolean matches(Method method) {
+				return names.contains(method.getName());
+			}
+		};
+	}
+
+	/**
+	 * @param methodName
+	 * @param parameterTypes
+	 * @return a selector for methods with the given name and exact parameter types
+	 */
+	public static MethodSelector bySignature(final String methodName, Class<?>... parameterTypes) {
+		final Class<?>[] types = parameterTypes.clone();
+		return new MethodSelector() {
+			public boolean matches(Method method) {
+				return method.getName().equals(methodName) && Arrays.equals(method.getParameterTypes(), types);
+			}
+		};
+	}
+
+	/**
+	 * @param annotationClass annotation that must be retained at runtime
+	 * @return a selector for methods that carry the given annotation
+	 */
+	public static MethodSelector byAnnotation(final Class<? extends Annotation> annotationClass) {
+		return new MethodSelector() {
+			public boolean matches(Method method) {
+				return method.isAnnotationPresent(annotationClass);
+			}
+		};
+	}
+
+	/**
+	 * @param selectors
+	 * @return a selector for methods selected by any of the given selectors
+	 */
+	public static MethodSelector anyOf(final MethodSelector... selectors) {
+		return new MethodSelector() {
+			public boolean matches(Method method) {
+				for (MethodSelector selector : selectors) {
+					if (selector.matches(method)) {
+						return true;
+					}
+				}
+				return false;
+			}
+		};
+	}
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2011-2014 Jeroen Meetsma - IJsberg Automatisering BV
+ *
+ * This file is part of Iglu.
+ *
+ * Iglu is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Iglu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Iglu.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.ijsberg.iglu.util.reflection;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+
+/**
+ * Represents a class generated by ProxyClassGenerator.
+ */
+public class ProxyClass<T> {
+
+	private final Class<T> interfaceClass;
+	private final Class<?> generatedClass;
+	private final Method[] methods;
+	private final MethodHandle constructor;
+
+	ProxyClass(Class<T> interfaceClass, Class<?> generatedClass, Method[] methods, MethodHandle constructor) {
+		this.interfaceClass = interfaceClass;
+		this.generatedClass = generatedClass;
+		this.methods = methods;
+		this.constructor = constructor.asType(MethodType.methodType(Object.class, Object.class, InterceptionPoint.class));
+	}
+
+	/**
+	 * @return the interface implemented by the generated class
+	 */
+	public Class<T> getInterfaceClass() {
+		return interfaceClass;
+	}
+
+	/**
+	 * @return the generated class
+	 */
+	public Class<?> getGeneratedClass() {
+		return generatedClass;
+	}
+
+	/**
+	 * @return the implemented methods; the index of a method in this array identifies
+	 * the method in calls to an InterceptionPoint
+	 */
+	public Method[] getMethods() {
+		return methods.clone();
+	}
+
+	/**
+	 * @param target            object that is invoked if invocations are not intercepted
+	 * @param interceptionPoint
+	 * @return a new proxy
+	 */
+	public T newInstance(T target, InterceptionPoint interceptionPoint) {
+		if (target == null || interceptionPoint == null) {
+			throw new NullPointerException("target and interception point can not be null");
+		}
+		try {
+			return interfaceClass.cast((Object) constructor.invokeExact((Object) target, interceptionPoint));
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable t) {
+			throw new RuntimeException("can not instantiate proxy class " + generatedClass.getName(), t);
+		}
+	}
+}
@@ -0,0 +1,584 @@
+/*
+ * Copyright 2011-2014 Jeroen Meetsma - IJsberg Automatisering BV
+ *
+ * This file is part of Iglu.
+ *
+ * Iglu is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Iglu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Iglu.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.ijsberg.iglu.util.reflection;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates proxy classes as an alternative to java.lang.reflect.Proxy.
+ * <p/>
+ * A class is generated for every combination of implementation class and interface,
+ * so that every call site in a generated class only sees one type of target.
+ * The methods of a generated class have the exact signatures of the interface:
+ * they invoke the target directly, without boxing arguments or allocating an argument array,
+ * unless the InterceptionPoint reports that an invocation must be intercepted.
+ * <p/>
+ * Generated classes are defined in the package and class loader of the interface,
+ * as hidden classes if the runtime supports them.
+ * A proxy class can not be generated for interfaces in a package that can not be
+ * accessed from this module, such as java.*, or for interfaces whose class loader can not see Iglu.
+ * <p/>
+ * Unlike java.lang.reflect.Proxy, a generated proxy does not wrap undeclared checked
+ * exceptions thrown by an interceptor in an UndeclaredThrowableException.
+ */
+public class ProxyClassGenerator {
+
+	private static final String PROXY_CLASS_NAME_INFIX = "$IgluProxy$";
+
+	private static final String OBJECT = "java/lang/Object";
+	private static final String INTERCEPTION_POINT = InterceptionPoint.class.getName().replace('.', '/');
+	private static final String INTERCEPTION_POINT_DESCRIPTOR = "L" + INTERCEPTION_POINT + ";";
+	private static final String TARGET_FIELD = "target";
+	private static final String INTERCEPTION_POINT_FIELD = "interceptionPoint";
+
+	private static final int CLASS_FILE_VERSION = 49;
+	private static final int ACC_PUBLIC = 0x0001;
+	private static final int ACC_PRIVATE = 0x0002;
+	private static final int ACC_FINAL = 0x0010;
+	private static final int ACC_SUPER = 0x0020;
+
+	private static final AtomicInteger proxyClassCounter = new AtomicInteger();
+
+	private static final ClassValue<Map<Class<?>, Optional<ProxyClass<?>>>> proxyClassesByImplementationClass =
+			new ClassValue<Map<Class<?>, Optional<ProxyClass<?>>>>() {
+				@Override
+				protected Map<Class<?>, Optional<ProxyClass<?>>> computeValue(Class<?> type) {
+					return new ConcurrentHashMap<Class<?>, Optional<ProxyClass<?>>>();
+				}
+			};
+
+	/**
+	 * @param implementationClass class of the objects the proxies will invoke
+	 * @param interfaceClass      interface to implement
+	 * @return a generated proxy class, or null if no proxy class can be generated for the interface
+	 * @throws IllegalArgumentException if interfaceClass is not an interface implemented by implementationClass
+	 */
+	public static <T> ProxyClass<T> getProxyClass(Class<?> implementationClass, Class<T> interfaceClass) {
+		if (!interfaceClass.isInterface() || !interfaceClass.isAssignableFrom(implementationClass)) {
+			throw new IllegalArgumentException("class " + implementationClass.getName() + " does not implement interface " + interfaceClass.getName());
+		}
+		Map<Class<?>, Optional<ProxyClass<?>>> proxyClasses = proxyClassesByImplementationClass.get(implementationClass);
+		Optional<ProxyClass<?>> proxyClass = proxyClasses.get(interfaceClass);
+		if (proxyClass == null) {
+			proxyClass = Optional.<ProxyClass<?>>ofNullable(generateProxyClass(implementationClass, interfaceClass));
+			Optional<ProxyClass<?>> concurrentlyGenerated = proxyClasses.putIfAbsent(interfaceClass, proxyClass);
+			if (concurrentlyGenerated != null) {
+				proxyClass = concurrentlyGenerated;
+			}
+		}
+		//cached by interface
+		@SuppressWarnings("unchecked")
+		ProxyClass<T> result = (ProxyClass<T>) proxyClass.orElse(null);
+		return result;
+	}
+
+	private static <T> ProxyClass<T> generateProxyClass(Class<?> implementationClass, Class<T> interfaceClass) {
+		if (!isInterceptionPointVisibleFrom(interfaceClass.getClassLoader())) {
+			return null;
+		}
+		Method[] methods = getMethodsToImplement(interfaceClass);
+		String className = getPackagePrefix(interfaceClass) + interfaceClass.getSimpleName() +
+				PROXY_CLASS_NAME_INFIX + toIdentifier(implementationClass.getSimpleName()) + "$" + proxyClassCounter.incrementAndGet();
+		byte[] classFile = new ProxyClassWriter(className.replace('.', '/'), interfaceClass, methods).toByteArray();
+		try {
+			MethodHandles.Lookup lookup = defineClass(MethodHandles.privateLookupIn(interfaceClass, MethodHandles.lookup()), classFile);
+			return new ProxyClass<T>(interfaceClass, lookup.lookupClass(), methods,
+					lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class, interfaceClass, InterceptionPoint.class)));
+		} catch (IllegalAccessException | SecurityException e) {
+			//package of interface not accessible; errors such as VerifyError or ClassFormatError
+			//point at a defect in the generated class and are passed on
+			return null;
+		} catch (ReflectiveOperationException e) {
+			throw new RuntimeException("can not generate proxy class for " + interfaceClass.getName(), e);
+		}
+	}
+
+	private static String getPackagePrefix(Class<?> interfaceClass) {
+		String name = interfaceClass.getName();
+		return name.substring(0, name.lastIndexOf('.') + 1);
+	}
+
+	private static String toIdentifier(String name) {
+		StringBuilder result = new StringBuilder();
+		for (char c : name.toCharArray()) {
+			result.append(Character.isJavaIdentifierPart(c) ? c : '_');
+		}
+		return result.toString();
+	}
+
+	private static boolean isInterceptionPointVisibleFrom(ClassLoader classLoader) {
+		if (classLoader == null) {
+			return false;
+		}
+		try {
+			return Class.forName(InterceptionPoint.class.getName(), false, classLoader) == InterceptionPoint.class;
+		} catch (ClassNotFoundException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Defines the class as hidden class if the runtime supports it (Java 15+),
+	 * as ordinary class in the package of the lookup class otherwise.
+	 *
+	 * @return a lookup on the defined class
+	 */
+	private static MethodHandles.Lookup defineClass(MethodHandles.Lookup lookup, byte[] classFile) throws IllegalAccessException {
+		try {
+			Class<?> classOptionType = Class.forName(MethodHandles.Lookup.class.getName() + "$ClassOption");
+			Method defineHiddenClass = MethodHandles.Lookup.class.getMethod("defineHiddenClass", byte[].class, boolean.class, Array.newInstance(classOptionType, 0).getClass());
+			return (MethodHandles.Lookup) defineHiddenClass.invoke(lookup, classFile, true, Array.newInstance(classOptionType, 0));
+		} catch (ClassNotFoundException | NoSuchMethodException e) {
+			//hidden classes not supported
+		} catch (java.lang.reflect.InvocationTargetException e) {
+			if (!(e.getCause() instanceof IllegalAccessException)) {
+				throw new RuntimeException("can not define hidden class", e.getCause());
+			}
+			//lookup does not have full privilege access
+		}
+		return MethodHandles.privateLookupIn(lookup.defineClass(classFile), MethodHandles.lookup());
+	}
+
+	/**
+	 * @param interfaceClass
+	 * @return the abstract and default methods of the interface, followed by equals, hashCode and toString
+	 */
+	private static Method[] getMethodsToImplement(Class<?> interfaceClass) {
+		Map<String, Method> methodsBySignature = new LinkedHashMap<String, Method>();
+		List<Method> methods = new ArrayList<Method>(Arrays.asList(interfaceClass.getMethods()));
+		try {
+			methods.add(Object.class.getMethod("equals", Object.class));
+			methods.add(Object.class.getMethod("hashCode"));
+			methods.add(Object.class.getMethod("toString"));
+		} catch (NoSuchMethodException e) {
+			throw new Error(e);
+		}
+		for (Method method : methods) {
+			if (!Modifier.isStatic(method.getModifiers())) {
+				String signature = method.getName() + getDescriptor(method);
+				if (!methodsBySignature.containsKey(signature)) {
+					methodsBySignature.put(signature, method);
+				}
+			}
+		}
+		return methodsBySignature.values().toArray(new Method[0]);
+	}
+
+	private static String getDescriptor(Method method) {
+		return MethodType.methodType(method.getReturnType(), method.getParameterTypes()).toMethodDescriptorString();
+	}
+
+	private static String getInternalName(Class<?> clasz) {
+		return clasz.getName().replace('.', '/');
+	}
+
+	/**
+	 * Writes a class file (version 49, so no stack map frames are needed)
+	 * for a final class that implements a single interface.
+	 */
+	private static class ProxyClassWriter {
+
+		private final ConstantPool constantPool = new ConstantPool();
+		private final String className;
+		private final Class<?> interfaceClass;
+		private final String interfaceName;
+		private final String interfaceDescriptor;
+		private final Method[] methods;
+
+		private ProxyClassWriter(String className, Class<?> interfaceClass, Method[] methods) {
+			this.className = className;
+			this.interfaceClass = interfaceClass;
+			this.interfaceName = getInternalName(interfaceClass);
+			this.interfaceDescriptor = "L" + interfaceName + ";";
+			this.methods = methods;
+		}
+
+		private byte[] toByteArray() {
+			ByteVector methodBytes = new ByteVector();
+			writeConstructor(methodBytes);
+			for (int i = 0; i < methods.length; i++) {
+				writeMethod(methodBytes, i, methods[i]);
+			}
+
+			ByteVector fieldBytes = new ByteVector();
+			writeField(fieldBytes, TARGET_FIELD, interfaceDescriptor);
+			writeField(fieldBytes, INTERCEPTION_POINT_FIELD, INTERCEPTION_POINT_DESCRIPTOR);
+
+			int thisClass = constantPool.classRef(className);
+			int superClass = constantPool.classRef(OBJECT);
+			int implementedInterface = constantPool.classRef(interfaceName);
+
+			ByteVector classFile = new ByteVector();
+			classFile.putU4(0xCAFEBABE).putU2(0).putU2(CLASS_FILE_VERSION);
+			constantPool.writeTo(classFile);
+			classFile.putU2(ACC_PUBLIC | ACC_FINAL | ACC_SUPER).putU2(thisClass).putU2(superClass);
+			classFile.putU2(1).putU2(implementedInterface);
+			classFile.putU2(2).putBytes(fieldBytes);
+			classFile.putU2(methods.length + 1).putBytes(methodBytes);
+			classFile.putU2(0);
+			return classFile.toByteArray();
+		}
+
+		private void writeField(ByteVector out, String name, String descriptor) {
+			out.putU2(ACC_PRIVATE | ACC_FINAL).putU2(constantPool.utf8(name)).putU2(constantPool.utf8(descriptor)).putU2(0);
+		}
+
+		private void writeConstructor(ByteVector out) {
+			ByteVector code = new ByteVector();
+			code.putU1(Opcodes.ALOAD_0);
+			code.putU1(Opcodes.INVOKESPECIAL).putU2(constantPool.methodRef(OBJECT, "<init>", "()V"));
+			code.putU1(Opcodes.ALOAD_0).putU1(Opcodes.ALOAD_1);
+			code.putU1(Opcodes.PUTFIELD).putU2(constantPool.fieldRef(className, TARGET_FIELD, interfaceDescriptor));
+			code.putU1(Opcodes.ALOAD_0).putU1(Opcodes.ALOAD_2);
+			code.putU1(Opcodes.PUTFIELD).putU2(constantPool.fieldRef(className, INTERCEPTION_POINT_FIELD, INTERCEPTION_POINT_DESCRIPTOR));
+			code.putU1(Opcodes.RETURN);
+			writeMethodInfo(out, ACC_PUBLIC, "<init>", "(" + interfaceDescriptor + INTERCEPTION_POINT_DESCRIPTOR + ")V", code, 2, 3);
+		}
+
+		/**
+		 * Writes:
+		 * <pre>
+		 * if (interceptionPoint.isIntercepted(index)) {
+		 *     return (R) interceptionPoint.intercept(this, index, new Object[]{arguments...});
+		 * }
+		 * return target.method(arguments...);
+		 * </pre>
+		 */
+		private void writeMethod(ByteVector out, int methodIndex, Method method) {
+			Class<?>[] parameterTypes = method.getParameterTypes();
+			Class<?> returnType = method.getReturnType();
+			String descriptor = getDescriptor(method);
+			int parameterSlots = 0;
+			for (Class<?> parameterType : parameterTypes) {
+				parameterSlots += getSlotSize(parameterType);
+			}
+
+			ByteVector code = new ByteVector();
+			code.putU1(Opcodes.ALOAD_0);
+			code.putU1(Opcodes.GETFIELD).putU2(constantPool.fieldRef(className, INTERCEPTION_POINT_FIELD, INTERCEPTION_POINT_DESCRIPTOR));
+			pushInt(code, methodIndex);
+			code.putU1(Opcodes.INVOKEVIRTUAL).putU2(constantPool.methodRef(INTERCEPTION_POINT, "isIntercepted", "(I)Z"));
+			int branchOffset = code.length();
+			code.putU1(Opcodes.IFNE).putU2(0);
+
+			//direct invocation
+			code.putU1(Opcodes.ALOAD_0);
+			code.putU1(Opcodes.GETFIELD).putU2(constantPool.fieldRef(className, TARGET_FIELD, interfaceDescriptor));
+			int slot = 1;
+			for (Class<?> parameterType : parameterTypes) {
+				code.putU1(getLoadOpcode(parameterType)).putU1(slot);
+				slot += getSlotSize(parameterType);
+			}
+			if (method.getDeclaringClass() == Object.class) {
+				code.putU1(Opcodes.INVOKEVIRTUAL).putU2(constantPool.methodRef(OBJECT, method.getName(), descriptor));
+			} else {
+				code.putU1(Opcodes.INVOKEINTERFACE).putU2(constantPool.interfaceMethodRef(interfaceName, method.getName(), descriptor))
+						.putU1(1 + parameterSlots).putU1(0);
+			}
+			code.putU1(getReturnOpcode(returnType));
+
+			//intercepted invocation
+			code.putU2At(branchOffset + 1, code.length() - branchOffset);
+			code.putU1(Opcodes.ALOAD_0);
+			code.putU1(Opcodes.GETFIELD).putU2(constantPool.fieldRef(className, INTERCEPTION_POINT_FIELD, INTERCEPTION_POINT_DESCRIPTOR));
+			code.putU1(Opcodes.ALOAD_0);
+			pushInt(code, methodIndex);
+			if (parameterTypes.length == 0) {
+				code.putU1(Opcodes.ACONST_NULL);
+			} else {
+				pushInt(code, parameterTypes.length);
+				code.putU1(Opcodes.ANEWARRAY).putU2(constantPool.classRef(OBJECT));
+				slot = 1;
+				for (int i = 0; i < parameterTypes.length; i++) {
+					code.putU1(Opcodes.DUP);
+					pushInt(code, i);
+					code.putU1(getLoadOpcode(parameterTypes[i])).putU1(slot);
+					box(code, parameterTypes[i]);
+					code.putU1(Opcodes.AASTORE);
+					slot += getSlotSize(parameterTypes[i]);
+				}
+			}
+			code.putU1(Opcodes.INVOKEVIRTUAL).putU2(constantPool.methodRef(INTERCEPTION_POINT, "intercept",
+					"(Ljava/lang/Object;I[Ljava/lang/Object;)Ljava/lang/Object;"));
+			unboxOrCast(code, returnType);
+			code.putU1(getReturnOpcode(returnType));
+
+			//direct invocation: target and arguments
+			//interception: interception point, proxy, index, array, array, index, argument (2 slots at most)
+			int maxStack = Math.max(2 + parameterSlots, 8);
+			writeMethodInfo(out, ACC_PUBLIC | ACC_FINAL, method.getName(), descriptor, code, maxStack, 1 + parameterSlots);
+		}
+
+		private void writeMethodInfo(ByteVector out, int accessFlags, String name, String descriptor, ByteVector code, int maxStack, int maxLocals) {
+			out.putU2(accessFlags).putU2(constantPool.utf8(name)).putU2(constantPool.utf8(descriptor));
+			out.putU2(1);
+			out.putU2(constantPool.utf8("Code")).putU4(12 + code.length());
+			out.putU2(maxStack).putU2(maxLocals).putU4(code.length()).putBytes(code);
+			//no exception table, no attributes
+			out.putU2(0).putU2(0);
+		}
+
+		private void pushInt(ByteVector code, int value) {
+			if (value >= -1 && value <= 5) {
+				code.putU1(Opcodes.ICONST_0 + value);
+			} else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+				code.putU1(Opcodes.BIPUSH).putU1(value);
+			} else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+				code.putU1(Opcodes.SIPUSH).putU2(value);
+			} else {
+				code.putU1(Opcodes.LDC_W).putU2(constantPool.integer(value));
+			}
+		}
+
+		private void box(ByteVector code, Class<?> type) {
+			if (type.isPrimitive()) {
+				String wrapper = getInternalName(MethodType.methodType(type).wrap().returnType());
+				code.putU1(Opcodes.INVOKESTATIC).putU2(constantPool.methodRef(wrapper, "valueOf",
+						"(" + MethodType.methodType(type).toMethodDescriptorString().substring(2) + ")L" + wrapper + ";"));
+			}
+		}
+
+		private void unboxOrCast(ByteVector code, Class<?> type) {
+			if (type == void.class) {
+				code.putU1(Opcodes.POP);
+			} else if (type.isPrimitive()) {
+				String wrapper = getInternalName(MethodType.methodType(type).wrap().returnType());
+				code.putU1(Opcodes.CHECKCAST).putU2(constantPool.classRef(wrapper));
+				code.putU1(Opcodes.INVOKEVIRTUAL).putU2(constantPool.methodRef(wrapper, type.getName() + "Value",
+						MethodType.methodType(type).toMethodDescriptorString()));
+			} else if (type != Object.class) {
+				code.putU1(Opcodes.CHECKCAST).putU2(constantPool.classRef(getInternalName(type)));
+			}
+		}
+
+		private static int getSlotSize(Class<?> type) {
+			return type == long.class || type == double.class ? 2 : 1;
+		}
+
+		private static int getLoadOpcode(Class<?> type) {
+			if (type == long.class) {
+				return Opcodes.LLOAD;
+			}
+			if (type == float.class) {
+				return Opcodes.FLOAD;
+			}
+			if (type == double.class) {
+				return Opcodes.DLOAD;
+			}
+			if (type.isPrimitive()) {
+				return Opcodes.ILOAD;
+			}
+			return Opcodes.ALOAD;
+		}
+
+		private static int getReturnOpcode(Class<?> type) {
+			if (type == void.class) {
+				return Opcodes.RETURN;
+			}
+			if (type == long.class) {
+				return Opcodes.LRETURN;
+			}
+			if (type == float.class) {
+				return Opcodes.FRETURN;
+			}
+			if (type == double.class) {
+				return Opcodes.DRETURN;
+			}
+			if (type.isPrimitive()) {
+				return Opcodes.IRETURN;
+			}
+			return Opcodes.ARETURN;
+		}
+	}
+
+	private static class Opcodes {
+		private static final int ACONST_NULL = 0x01;
+		private static final int ICONST_0 = 0x03;
+		private static final int BIPUSH = 0x10;
+		private static final int SIPUSH = 0x11;
+		private static final int LDC_W = 0x13;
+		private static final int ILOAD = 0x15;
+		private static final int LLOAD = 0x16;
+		private static final int FLOAD = 0x17;
+		private static final int DLOAD = 0x18;
+		private static final int ALOAD = 0x19;
+		private static final int ALOAD_0 = 0x2a;
+		private static final int ALOAD_1 = 0x2b;
+		private static final int ALOAD_2 = 0x2c;
+		private static final int AASTORE = 0x53;
+		private static final int POP = 0x57;
+		private static final int DUP = 0x59;
+		private static final int IFNE = 0x9a;
+		private static final int IRETURN = 0xac;
+		private static final int LRETURN = 0xad;
+		private static final int FRETURN = 0xae;
+		private static final int DRETURN = 0xaf;
+		private static final int ARETURN = 0xb0;
+		private static final int RETURN = 0xb1;
+		private static final int GETFIELD = 0xb4;
+		private static final int PUTFIELD = 0xb5;
+		private static final int INVOKEVIRTUAL = 0xb6;
+		private static final int INVOKESPECIAL = 0xb7;
+		private static final int INVOKESTATIC = 0xb8;
+		private static final int INVOKEINTERFACE = 0xb9;
+		private static final int ANEWARRAY = 0xbd;
+		private static final int CHECKCAST = 0xc0;
+	}
+
+	private static class ConstantPool {
+
+		private static final int UTF8 = 1;
+		private static final int INTEGER = 3;
+		private static final int CLASS = 7;
+		private static final int FIELD_REF = 9;
+		private static final int METHOD_REF = 10;
+		private static final int INTERFACE_METHOD_REF = 11;
+		private static final int NAME_AND_TYPE = 12;
+
+		private final ByteVector entries = new ByteVector();
+		private final Map<String, Integer> indexesByKey = new HashMap<String, Integer>();
+		private int nextIndex = 1;
+
+		private int utf8(String value) {
+			Integer index = indexesByKey.get("U" + value);
+			if (index == null) {
+				entries.putU1(UTF8).putModifiedUtf8(value);
+				index = register("U" + value);
+			}
+			return index;
+		}
+
+		private int integer(int value) {
+			Integer index = indexesByKey.get("I" + value);
+			if (index == null) {
+				entries.putU1(INTEGER).putU4(value);
+				index = register("I" + value);
+			}
+			return index;
+		}
+
+		private int classRef(String internalName) {
+			return reference(CLASS, internalName, utf8(internalName));
+		}
+
+		private int fieldRef(String owner, String name, String descriptor) {
+			return memberReference(FIELD_REF, owner, name, descriptor);
+		}
+
+		private int methodRef(String owner, String name, String descriptor) {
+			return memberReference(METHOD_REF, owner, name, descriptor);
+		}
+
+		private int interfaceMethodRef(String owner, String name, String descriptor) {
+			return memberReference(INTERFACE_METHOD_REF, owner, name, descriptor);
+		}
+
+		private int memberReference(int tag, String owner, String name, String descriptor) {
+			int ownerIndex = classRef(owner);
+			int nameAndTypeIndex = reference(NAME_AND_TYPE, name + ":" + descriptor, utf8(name), utf8(descriptor));
+			return reference(tag, owner + "." + name + ":" + descriptor, ownerIndex, nameAndTypeIndex);
+		}
+
+		private int reference(int tag, String value, int... referencedIndexes) {
+			String key = tag + value;
+			Integer index = indexesByKey.get(key);
+			if (index == null) {
+				entries.putU1(tag);
+				for (int referencedIndex : referencedIndexes) {
+					entries.putU2(referencedIndex);
+				}
+				index = register(key);
+			}
+			return index;
+		}
+
+		private int register(String key) {
+			indexesByKey.put(key, nextIndex);
+			return nextIndex++;
+		}
+
+		private void writeTo(ByteVector out) {
+			out.putU2(nextIndex).putBytes(entries);
+		}
+	}
+
+	private static class ByteVector {
+
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		private final DataOutputStream out = new DataOutputStream(bytes);
+
+		private ByteVector putU1(int value) {
+			bytes.write(value);
+			return this;
+		}
+
+		private ByteVector putU2(int value) {
+			bytes.write(value >>> 8);
+			bytes.write(value);
+			return this;
+		}
+
+		private ByteVector putU4(int value) {
+			putU2(value >>> 16);
+			return putU2(value);
+		}
+
+		private ByteVector putModifiedUtf8(String value) {
+			try {
+				out.writeUTF(value);
+				out.flush();
+			} catch (IOException e) {
+				throw new IllegalArgumentException("can not write constant " + value, e);
+			}
+			return this;
+		}
+
+		private ByteVector putBytes(ByteVector other) {
+			bytes.write(other.bytes.toByteArray(), 0, other.length());
+			return this;
+		}
+
+		private void putU2At(int offset, int value) {
+			byte[] content = bytes.toByteArray();
+			content[offset] = (byte) (value >>> 8);
+			content[offset + 1] = (byte) value;
+			bytes.reset();
+			bytes.write(content, 0, content.length);
+		}
+
+		private int length() {
+			return bytes.size();
+		}
+
+		private byte[] toByteArray() {
+			return bytes.toByteArray();
+		}
+	}
+}
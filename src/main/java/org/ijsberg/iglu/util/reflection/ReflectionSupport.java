@@ -21,11 +21,15 @@ package org.ijsberg.iglu.util.reflection;
 import org.ijsberg.iglu.configuration.ConfigurationException;
 import org.ijsberg.iglu.util.types.Converter;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 /**
@@ -183,11 +187,19 @@ public class ReflectionSupport {
 	}
 
 
-	private static HashMap<Class<?>, Constructor<?>> lastUsedConstructors = new HashMap<Class<?>, Constructor<?>>();
+	private static final ClassValue<Map<ArgumentTypes, InstantiationPlan>> INSTANTIATION_PLANS = new ClassValue<Map<ArgumentTypes, InstantiationPlan>>() {
+		@Override
+		protected Map<ArgumentTypes, InstantiationPlan> computeValue(Class<?> clasz) {
+			return new ConcurrentHashMap<ArgumentTypes, InstantiationPlan>();
+		}
+	};
 
 
 	/**
 	 * Instantiates a class by invoking a constructor with the given init parameters.
+	 * The constructors that can take arguments of particular classes are determined
+	 * once per class and combination of argument classes, including combinations
+	 * for which no constructor qualifies.
 	 *
 	 * @param clasz
 	 * @param initArgs
@@ -196,31 +208,17 @@ public class ReflectionSupport {
 	 */
 	public static <T> T instantiateClass(Class<T> clasz, Object... initArgs)
 			throws InstantiationException {
-		Exception lastException = null;
-		Constructor<?> constructor = lastUsedConstructors.get(clasz);
-		if(constructor != null) {
-			try {
-				return (T)instantiateClass(clasz, constructor, initArgs);
-			} catch (Exception e) {
-				//TODO keep statistics
-				lastException = new ConfigurationException("cannot instantiate class using " +
-						getInstantiationDetails(clasz, initArgs), e);
-			}
-		}
 		if (initArgs == null) {
 			initArgs = new Object[0];
 		}
-		Class<?>[] initArgTypes = getTypesForArgs(initArgs);
-		try {
-			//expensive call
-			constructor = clasz.getConstructor(initArgTypes);
-			lastUsedConstructors.put(clasz, constructor);
-			return (T)instantiateClass(clasz, constructor, initArgs);
-		} catch (NoSuchMethodException e) {
-			lastException = new ConfigurationException("cannot instantiate class using " +
-					getInstantiationDetails(clasz, initArgs), e);
+		ArgumentTypes argumentTypes = new ArgumentTypes(initArgs);
+		Map<ArgumentTypes, InstantiationPlan> plans = INSTANTIATION_PLANS.get(clasz);
+		InstantiationPlan plan = plans.get(argumentTypes);
+		if (plan == null) {
+			plan = new InstantiationPlan(clasz, argumentTypes.types);
+			plans.put(argumentTypes, plan);
 		}
-		return getInstanceForTranslatedArgs(clasz, initArgTypes, lastException, initArgs);
+		return (T) plan.instantiate(initArgs);
 	}
 
 	private static String getInstantiationDetails(Class clasz, Object[] initargs) {
@@ -231,40 +229,147 @@ public class ReflectionSupport {
 	private static String getArguemntTypes(Object[] initargs) {
 		StringBuffer result = new StringBuffer();
 		for(Object initArg : initargs) {
-			result.append((result.length() > 0 ? ",":"") + initArg.getClass().getSimpleName());
+			result.append((result.length() > 0 ? ",":"") + (initArg != null ? initArg.getClass().getSimpleName() : null));
 		}
 		return result.toString();
 	}
 
-	private static <T> T getInstanceForTranslatedArgs(Class<T> clasz, Class<?>[] initArgTypes, Exception lastException, Object[] initArgs) throws InstantiationException {
-		Constructor<?>[] constructors = clasz.getConstructors();
-		for (int i = 0; i < constructors.length; i++) {
-			if (Modifier.isPublic(constructors[i].getModifiers())) {
-				Class<?>[] inputTypes = constructors[i].getParameterTypes();
-				if (inputTypes.length == initArgs.length) {
-					try {
-						Object[] alternativeInitArgs = Converter.convertToMatchingTypes(initArgs, inputTypes);
-						if (alternativeInitArgs != null) {
-							lastUsedConstructors.put(clasz, constructors[i]);
-							return (T)instantiateClass(clasz, constructors[i], alternativeInitArgs);
-						}
-					} catch (IllegalArgumentException e) {
-						//maybe another one fits
-						lastException = new ConfigurationException("cannot instantiate class using " +
-								getInstantiationDetails(clasz, initArgs), e);
+	/**
+	 * Classes of a number of arguments.
+	 */
+	private static class ArgumentTypes {
+
+		private final Class<?>[] types;
+		private final int hashCode;
+
+		private ArgumentTypes(Object[] arguments) {
+			types = new Class<?>[arguments.length];
+			for (int i = 0; i < arguments.length; i++) {
+				types[i] = arguments[i] != null ? arguments[i].getClass() : null;
+			}
+			hashCode = Arrays.hashCode(types);
+		}
+
+		public boolean equals(Object other) {
+			return other instanceof ArgumentTypes && Arrays.equals(types, ((ArgumentTypes) other).types);
+		}
+
+		public int hashCode() {
+			return hashCode;
+		}
+	}
+
+	/**
+	 * Constructors of a class that qualify for arguments of particular classes.
+	 * If a public constructor takes exactly these classes, only that constructor is used.
+	 * Otherwise, the public constructors to which the arguments may be converted are
+	 * tried in turn, since conversion may still fail for the actual values.
+	 */
+	private static class InstantiationPlan {
+
+		private final Class<?> clasz;
+		private final Class<?>[] argumentTypes;
+		private final ConstructorInvoker exactMatch;
+		private final List<ConstructorInvoker> candidates = new ArrayList<ConstructorInvoker>();
+
+		private InstantiationPlan(Class<?> clasz, Class<?>[] argumentTypes) {
+			this.clasz = clasz;
+			this.argumentTypes = argumentTypes;
+			ConstructorInvoker exactMatch = null;
+			if (!Arrays.asList(argumentTypes).contains(null)) {
+				try {
+					exactMatch = new ConstructorInvoker(clasz.getConstructor(argumentTypes));
+				} catch (NoSuchMethodException e) {
+					//conversion needed
+				}
+			}
+			this.exactMatch = exactMatch;
+			if (exactMatch == null) {
+				for (Constructor<?> constructor : clasz.getConstructors()) {
+					if (isConvertible(argumentTypes, constructor.getParameterTypes())) {
+						candidates.add(new ConstructorInvoker(constructor));
 					}
 				}
 			}
 		}
-		throw new IgluInstantiationException("can not instantiate class " + clasz.getName() + ": no matching public constructor for init args " + Arrays.asList(initArgTypes), lastException);
+
+		private static boolean isConvertible(Class<?>[] argumentTypes, Class<?>[] parameterTypes) {
+			if (argumentTypes.length != parameterTypes.length) {
+				return false;
+			}
+			for (int i = 0; i < argumentTypes.length; i++) {
+				if (!Converter.isConvertible(argumentTypes[i], parameterTypes[i])) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private Object instantiate(Object[] initArgs) throws InstantiationException {
+			if (exactMatch != null) {
+				return exactMatch.newInstance(clasz, initArgs);
+			}
+			Exception lastException = null;
+			for (ConstructorInvoker candidate : candidates) {
+				try {
+					Object[] alternativeInitArgs = Converter.convertToMatchingTypes(initArgs, candidate.parameterTypes);
+					return candidate.newInstance(clasz, alternativeInitArgs);
+				} catch (IllegalArgumentException e) {
+					//maybe another one fits
+					lastException = new ConfigurationException("cannot instantiate class using " +
+							getInstantiationDetails(clasz, initArgs), e);
+				}
+			}
+			throw new IgluInstantiationException("can not instantiate class " + clasz.getName() + ": no matching public constructor for init args " + Arrays.asList(argumentTypes), lastException);
+		}
 	}
 
-	private static Class<? extends Object>[] getTypesForArgs(Object[] initArgs) {
-		Class<? extends Object>[] result = new Class[initArgs.length];
-		for(int i = 0; i < initArgs.length; i++) {
-			result[i] = initArgs[i].getClass();
+	/**
+	 * Invokes a constructor through a method handle, or reflectively if the constructor is not accessible.
+	 */
+	private static class ConstructorInvoker {
+
+		private final Constructor<?> constructor;
+		private final Class<?>[] parameterTypes;
+		private final MethodHandle handle;
+
+		private ConstructorInvoker(Constructor<?> constructor) {
+			this.constructor = constructor;
+			this.parameterTypes = constructor.getParameterTypes();
+			MethodHandle handle = null;
+			try {
+				handle = MethodHandles.publicLookup().unreflectConstructor(constructor)
+						.asSpreader(Object[].class, parameterTypes.length)
+						.asType(MethodType.methodType(Object.class, Object[].class));
+			} catch (IllegalAccessException e) {
+				//invoked reflectively
+			}
+			this.handle = handle;
+		}
+
+		private Object newInstance(Class<?> clasz, Object[] initArgs) throws InstantiationException {
+			if (handle == null) {
+				return instantiateClass(clasz, constructor, initArgs);
+			}
+			for (int i = 0; i < parameterTypes.length; i++) {
+				if (initArgs[i] == null && parameterTypes[i].isPrimitive()) {
+					throw new IllegalArgumentException("argument " + i + " for primitive parameter of " + constructor + " is null");
+				}
+			}
+			try {
+				return (Object) handle.invokeExact(initArgs);
+			} catch (RuntimeException e) {
+				throw e;
+			} catch (Error e) {
+				throw e;
+			} catch (Throwable t) {
+				//checked target exceptions are not explicitly logged
+				throw new InstantiationException("can not instantiate class " +
+						clasz.getName() + " due to exception in constructor with message: " +
+						t.getClass().getName() + ": " + t.getMessage() +
+						", for init args " + Arrays.asList(initArgs));
+			}
 		}
-		return result;
 	}
 
 
@@ -308,14 +413,23 @@ public class ReflectionSupport {
 	 * @return a set of methods with the given name and number of parameters
 	 */
 	public static Set<Method> getMethodsByName(Class<?> clasz, String methodName, int requiredNrofParameters) {
-		Set<Method> retval = new HashSet<Method>();
-		Method[] methods = clasz.getMethods();
-		for (int i = 0; i < methods.length; i++) {
-			Method method = methods[i];
-			if (methodName.equals(method.getName()) && method.getParameterTypes().length == requiredNrofParameters) {
-				retval.add(method);
-			}
+		return new HashSet<Method>(getMethodIndex(clasz).getMethods(methodName, requiredNrofParameters));
+	}
+
+	private static final ClassValue<MethodIndex> METHOD_INDEXES = new ClassValue<MethodIndex>() {
+		@Override
+		protected MethodIndex computeValue(Class<?> clasz) {
+			return new MethodIndex(clasz);
 		}
-		return retval;
+	};
+
+	/**
+	 * The index is created once per class and is discarded along with the class.
+	 *
+	 * @param clasz
+	 * @return an index of the public methods of the class by name and number of parameters
+	 */
+	public static MethodIndex getMethodIndex(Class<?> clasz) {
+		return METHOD_INDEXES.get(clasz);
 	}
 }
\ No newline at end of file
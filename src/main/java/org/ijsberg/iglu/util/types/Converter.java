@@ -21,7 +21,13 @@ package org.ijsberg.iglu.util.types;
 
 import org.ijsberg.iglu.util.reflection.ReflectionSupport;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Helper class that converts all kinds of primitives, primitive objects and strings.
@@ -183,35 +189,18 @@ public abstract class Converter {
 	}
 
 	protected static Object convertToPrimitive(Object source, Class<?> type) {
-		if ("byte".equals(type.getName())) {
-			return convertToByte(source);
-		}
-		if ("char".equals(type.getName())) {
-			return convertToCharacter(source);
-		}
-		if ("double".equals(type.getName())) {
-			return convertToDouble(source);
-		}
-		if ("float".equals(type.getName())) {
-			return convertToFloat(source);
-		}
-		if ("int".equals(type.getName())) {
-			return convertToInteger(source);
+		ConversionPlan plan = getPrimitiveConversionPlan(type);
+		if (plan == null) {
+			throw new IllegalArgumentException("can not convert '" + source + "' (" + type.getName() + ") to primitive");
 		}
-		if ("long".equals(type.getName())) {
-			return convertToLong(source);
-		}
-		if ("short".equals(type.getName())) {
-			return convertToShort(source);
-		}
-		if ("boolean".equals(type.getName())) {
-			return convertToBoolean(source);
-		}
-		throw new IllegalArgumentException("can not convert '" + source + "' (" + type.getName() + ") to primitive");
+		return plan.convert(source);
 	}
 
 
 	/**
+	 * The way a value is converted is determined once per combination
+	 * of the class of the value and the desired type.
+	 *
 	 * @param source
 	 * @param type   desired type
 	 * @return converted source object
@@ -221,26 +210,220 @@ public abstract class Converter {
 		if (source == null) {
 			return null;
 		}
-		if (type.isAssignableFrom(source.getClass())) {
-			return source;
+		return getConversionPlan(source.getClass(), type).convert(source);
+	}
+
+	/**
+	 * @param sourceClass class of a value, or null for a null value
+	 * @param type        desired type
+	 * @return false if values of the source class can never be converted to the desired type,
+	 * true if they can, or if it depends on the actual value
+	 */
+	public static boolean isConvertible(Class<?> sourceClass, Class<?> type) {
+		if (sourceClass == null) {
+			return !type.isPrimitive();
+		}
+		return !(getConversionPlan(sourceClass, type) instanceof FailingConversionPlan);
+	}
+
+	/**
+	 * Conversion of values of a particular class to a particular type.
+	 */
+	private static abstract class ConversionPlan {
+		abstract Object convert(Object source);
+	}
+
+	private static abstract class FailingConversionPlan extends ConversionPlan {
+	}
+
+	//attached to the target type, which usually belongs to the class loader of the plan's constructors,
+	//rather than to the source class, which is often a JDK class that would keep the plans forever
+	private static final ClassValue<Map<Class<?>, ConversionPlan>> CONVERSION_PLANS_BY_TYPE = new ClassValue<Map<Class<?>, ConversionPlan>>() {
+		@Override
+		protected Map<Class<?>, ConversionPlan> computeValue(Class<?> type) {
+			return new ConcurrentHashMap<Class<?>, ConversionPlan>();
+		}
+	};
+
+	private static ConversionPlan getConversionPlan(Class<?> sourceClass, Class<?> type) {
+		Map<Class<?>, ConversionPlan> plansBySourceClass = CONVERSION_PLANS_BY_TYPE.get(type);
+		ConversionPlan plan = plansBySourceClass.get(sourceClass);
+		if (plan == null) {
+			plan = createConversionPlan(sourceClass, type);
+			plansBySourceClass.put(sourceClass, plan);
+		}
+		return plan;
+	}
+
+	private static ConversionPlan createConversionPlan(Class<?> sourceClass, final Class<?> type) {
+		if (type.isAssignableFrom(sourceClass)) {
+			return IDENTITY;
 		}
 		if (type.isPrimitive()) {
-			return convertToPrimitive(source, type);
-		}
-		if ((source instanceof String || source instanceof Number) && (Number.class.isAssignableFrom(type) || Boolean.class.isAssignableFrom(type))) {
-			try {
-				Object retval = ReflectionSupport.instantiateClass(type, new Object[]{source});
-				return retval;
-			} catch (InstantiationException e) {
-				throw new IllegalArgumentException("can not convert '" + source + "' to type " + type + " with message: " + e.getMessage());
+			ConversionPlan plan = getPrimitiveConversionPlan(type);
+			if (plan != null) {
+				return plan;
+			}
+			return new FailingConversionPlan() {
+				Object convert(Object source) {
+					throw new IllegalArgumentException("can not convert '" + source + "' (" + type.getName() + ") to primitive");
+				}
+			};
+		}
+		if ((String.class == sourceClass || Number.class.isAssignableFrom(sourceClass)) && (Number.class.isAssignableFrom(type) || Boolean.class == type)) {
+			ConversionPlan plan = getPrimitiveConversionPlan(PRIMITIVES_BY_WRAPPER.get(type));
+			if (plan != null) {
+				return plan;
 			}
+			return createConstructorPlan(sourceClass, type);
 		}
 		if (type == String.class) {
-			return source.toString();
+			return TO_STRING;
 		}
-		throw new IllegalArgumentException("can not convert '" + source + "' (" + source.getClass() + ") to type " + type);
+		return new FailingConversionPlan() {
+			Object convert(Object source) {
+				throw new IllegalArgumentException("can not convert '" + source + "' (" + source.getClass() + ") to type " + type);
+			}
+		};
 	}
 
+	/**
+	 * @return a plan that invokes a public constructor that takes the source class,
+	 * or, if there is none, a plan that lets ReflectionSupport find a suitable constructor
+	 */
+	private static ConversionPlan createConstructorPlan(Class<?> sourceClass, final Class<?> type) {
+		try {
+			final MethodHandle constructor = MethodHandles.publicLookup().unreflectConstructor(type.getConstructor(sourceClass))
+					.asType(MethodType.methodType(Object.class, Object.class));
+			return new ConversionPlan() {
+				Object convert(Object source) {
+					try {
+						return constructor.invokeExact(source);
+					} catch (RuntimeException e) {
+						throw e;
+					} catch (Error e) {
+						throw e;
+					} catch (Throwable t) {
+						throw new IllegalArgumentException("can not convert '" + source + "' to type " + type + " with message: " + t.getMessage());
+					}
+				}
+			};
+		} catch (NoSuchMethodException e) {
+			//no exact match
+		} catch (IllegalAccessException e) {
+			//not accessible
+		}
+		return new ConversionPlan() {
+			Object convert(Object source) {
+				try {
+					return ReflectionSupport.instantiateClass(type, new Object[]{source});
+				} catch (InstantiationException e) {
+					throw new IllegalArgumentException("can not convert '" + source + "' to type " + type + " with message: " + e.getMessage());
+				}
+			}
+		};
+	}
+
+	private static ConversionPlan getPrimitiveConversionPlan(Class<?> type) {
+		if (type == byte.class) {
+			return TO_BYTE;
+		}
+		if (type == char.class) {
+			return TO_CHARACTER;
+		}
+		if (type == double.class) {
+			return TO_DOUBLE;
+		}
+		if (type == float.class) {
+			return TO_FLOAT;
+		}
+		if (type == int.class) {
+			return TO_INTEGER;
+		}
+		if (type == long.class) {
+			return TO_LONG;
+		}
+		if (type == short.class) {
+			return TO_SHORT;
+		}
+		if (type == boolean.class) {
+			return TO_BOOLEAN;
+		}
+		return null;
+	}
+
+	private static final Map<Class<?>, Class<?>> PRIMITIVES_BY_WRAPPER = new HashMap<Class<?>, Class<?>>();
+
+	static {
+		PRIMITIVES_BY_WRAPPER.put(Byte.class, byte.class);
+		PRIMITIVES_BY_WRAPPER.put(Double.class, double.class);
+		PRIMITIVES_BY_WRAPPER.put(Float.class, float.class);
+		PRIMITIVES_BY_WRAPPER.put(Integer.class, int.class);
+		PRIMITIVES_BY_WRAPPER.put(Long.class, long.class);
+		PRIMITIVES_BY_WRAPPER.put(Short.class, short.class);
+		PRIMITIVES_BY_WRAPPER.put(Boolean.class, boolean.class);
+	}
+
+	private static final ConversionPlan IDENTITY = new ConversionPlan() {
+		Object convert(Object source) {
+			return source;
+		}
+	};
+
+	private static final ConversionPlan TO_STRING = new ConversionPlan() {
+		Object convert(Object source) {
+			return source.toString();
+		}
+	};
+
+	private static final ConversionPlan TO_BYTE = new ConversionPlan() {
+		Object convert(Object source) {
+			return convertToByte(source);
+		}
+	};
+
+	private static final ConversionPlan TO_CHARACTER = new ConversionPlan() {
+		Object convert(Object source) {
+			return convertToCharacter(source);
+		}
+	};
+
+	private static final ConversionPlan TO_DOUBLE = new ConversionPlan() {
+		Object convert(Object source) {
+			return convertToDouble(source);
+		}
+	};
+
+	private static final ConversionPlan TO_FLOAT = new ConversionPlan() {
+		Object convert(Object source) {
+			return convertToFloat(source);
+		}
+	};
+
+	private static final ConversionPlan TO_INTEGER = new ConversionPlan() {
+		Object convert(Object source) {
+			return convertToInteger(source);
+		}
+	};
+
+	private static final ConversionPlan TO_LONG = new ConversionPlan() {
+		Object convert(Object source) {
+			return convertToLong(source);
+		}
+	};
+
+	private static final ConversionPlan TO_SHORT = new ConversionPlan() {
+		Object convert(Object source) {
+			return convertToShort(source);
+		}
+	};
+
+	private static final ConversionPlan TO_BOOLEAN = new ConversionPlan() {
+		Object convert(Object source) {
+			return convertToBoolean(source);
+		}
+	};
+
 	/**
 	 * Tries to convert the objects in the array into the types specified.
 	 * This is typically useful if a method is invoked command-line by reflection.
@@ -254,11 +437,7 @@ public abstract class Converter {
 		Object[] alternativeObjects = new Object[objects.length];
 		if (targetTypes.length == objects.length) {
 			for (int j = 0; j < objects.length; j++) {
-				if (objects[j] == null || targetTypes[j].isAssignableFrom(objects[j].getClass())) {
-					alternativeObjects[j] = objects[j];
-				} else {
-					alternativeObjects[j] = convertToObject(objects[j], targetTypes[j]);
-				}
+				alternativeObjects[j] = convertToObject(objects[j], targetTypes[j]);
 			}
 			return alternativeObjects;
 		}
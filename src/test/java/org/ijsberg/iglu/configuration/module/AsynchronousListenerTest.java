@@ -0,0 +1,205 @@
+/*
+ * Copyright 2011-2013 Jeroen Meetsma - IJsberg
+ *
+ * This file is part of Iglu.
+ *
+ * Iglu is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Iglu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Iglu.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.ijsberg.iglu.configuration.module;
+
+import org.ijsberg.iglu.sample.configuration.ListenerInterface;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ */
+public class AsynchronousListenerTest {
+
+	//runs tasks when asked to
+	private static class ManualExecutor implements Executor {
+
+		private final List<Runnable> tasks = new ArrayList<Runnable>();
+
+		public synchronized void execute(Runnable task) {
+			tasks.add(task);
+		}
+
+		private void runTasks() {
+			Runnable task;
+			while ((task = nextTask()) != null) {
+				task.run();
+			}
+		}
+
+		private synchronized Runnable nextTask() {
+			return tasks.isEmpty() ? null : tasks.remove(0);
+		}
+	}
+
+	private static class SlowListener implements ListenerInterface {
+
+		private final CountDownLatch gate = new CountDownLatch(1);
+		private final List<String> messages = new ArrayList<String>();
+		private final CountDownLatch received;
+
+		private SlowListener(int expectedMessages) {
+			received = new CountDownLatch(expectedMessages);
+		}
+
+		public String getLastMessage() {
+			synchronized (messages) {
+				return messages.isEmpty() ? null : messages.get(messages.size() - 1);
+			}
+		}
+
+		public void notify(String message) {
+			try {
+				gate.await();
+			} catch (InterruptedException e) {
+				throw new IllegalStateException(e);
+			}
+			synchronized (messages) {
+				messages.add(message);
+			}
+			received.countDown();
+		}
+
+		public String getId() {
+			return "slow";
+		}
+	}
+
+	@Test
+	public void testNotificationsReturnImmediatelyInOrder() throws Exception {
+		SlowListener slowListener = new SlowListener(100);
+		ListenerInterface listener = AsynchronousListener.createProxy(ListenerInterface.class, slowListener, null, 100);
+
+		for (int i = 0; i < 100; i++) {
+			//listener blocks until the gate opens
+			listener.notify("message " + i);
+		}
+		assertNull(slowListener.getLastMessage());
+
+		slowListener.gate.countDown();
+		assertTrue(slowListener.received.await(10, TimeUnit.SECONDS));
+		for (int i = 0; i < 100; i++) {
+			assertEquals("message " + i, slowListener.messages.get(i));
+		}
+	}
+
+	@Test
+	public void testValueReturningMethodsInvokedDirectly() throws Exception {
+		SlowListener slowListener = new SlowListener(1);
+		ListenerInterface listener = AsynchronousListener.createProxy(ListenerInterface.class, slowListener, null, 10);
+
+		listener.notify("pending");
+		assertEquals("slow", listener.getId());
+		assertNull(listener.getLastMessage());
+
+		slowListener.gate.countDown();
+		assertTrue(slowListener.received.await(10, TimeUnit.SECONDS));
+		assertEquals("pending", listener.getLastMessage());
+	}
+
+	@Test
+	public void testIdentity() throws Exception {
+		SlowListener slowListener = new SlowListener(0);
+		ListenerInterface listener = AsynchronousListener.createProxy(ListenerInterface.class, slowListener, null, 10);
+		ListenerInterface otherListener = AsynchronousListener.createProxy(ListenerInterface.class, slowListener, null, 10);
+
+		assertTrue(listener.equals(listener));
+		assertFalse(listener.equals(otherListener));
+		assertEquals(System.identityHashCode(listener), listener.hashCode());
+	}
+
+	@Test
+	public void testQueueCapacity() throws Exception {
+		try {
+			AsynchronousListener.createProxy(ListenerInterface.class, new SlowListener(0), null, 0);
+			fail("IllegalArgumentException expected");
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
+	@Test
+	public void testDiscardWhenFull() throws Exception {
+		SlowListener slowListener = new SlowListener(2);
+		slowListener.gate.countDown();
+		ManualExecutor executor = new ManualExecutor();
+		AsynchronousListener asynchronousListener = new AsynchronousListener(slowListener, executor, 2, true);
+		ListenerInterface listener = asynchronousListener.createProxy(ListenerInterface.class);
+
+		listener.notify("first");
+		listener.notify("second");
+		listener.notify("third");
+		assertEquals(1, asynchronousListener.getNrofDiscardedCalls());
+		assertEquals(0, asynchronousListener.getNrofDelayedCalls());
+
+		executor.runTasks();
+		assertEquals(2, slowListener.messages.size());
+		assertEquals("second", slowListener.getLastMessage());
+	}
+
+	@Test
+	public void testWaitWhenFull() throws Exception {
+		SlowListener slowListener = new SlowListener(2);
+		slowListener.gate.countDown();
+		ManualExecutor executor = new ManualExecutor();
+		AsynchronousListener asynchronousListener = new AsynchronousListener(slowListener, executor, 1, false);
+		final ListenerInterface listener = asynchronousListener.createProxy(ListenerInterface.class);
+
+		listener.notify("first");
+		Thread notifier = new Thread() {
+			public void run() {
+				listener.notify("second");
+			}
+		};
+		notifier.start();
+		for (int i = 0; i < 1000 && asynchronousListener.getNrofDelayedCalls() == 0; i++) {
+			Thread.sleep(10);
+		}
+		assertEquals(1, asynchronousListener.getNrofDelayedCalls());
+
+		executor.runTasks();
+		notifier.join(10000);
+		executor.runTasks();
+		assertEquals("second", slowListener.getLastMessage());
+		assertEquals(0, asynchronousListener.getNrofDiscardedCalls());
+	}
+
+	@Test
+	public void testFailuresAreCounted() throws Exception {
+		ManualExecutor executor = new ManualExecutor();
+		AsynchronousListener asynchronousListener = new AsynchronousListener(new SlowListener(0) {
+			public void notify(String message) {
+				throw new IllegalStateException(message);
+			}
+		}, executor, 10, false);
+		ListenerInterface listener = asynchronousListener.createProxy(ListenerInterface.class);
+
+		listener.notify("first");
+		listener.notify("second");
+		executor.runTasks();
+		assertEquals(2, asynchronousListener.getNrofFailedCalls());
+	}
+}
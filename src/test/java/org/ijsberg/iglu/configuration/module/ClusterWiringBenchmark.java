@@ -0,0 +1,93 @@
+/*
+ * Copyright 2011-2013 Jeroen Meetsma - IJsberg
+ *
+ * This file is part of Iglu.
+ *
+ * Iglu is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Iglu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Iglu.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.ijsberg.iglu.configuration.module;
+
+import org.ijsberg.iglu.configuration.Component;
+import org.ijsberg.iglu.sample.configuration.Apple;
+import org.ijsberg.iglu.sample.configuration.Banana;
+import org.ijsberg.iglu.sample.configuration.Listener;
+import org.ijsberg.iglu.sample.configuration.Notifier;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compares connecting components one by one with StandardCluster.connectAll.
+ * Not a unit test; run the main method, optionally with cluster sizes as arguments
+ * (default 1000 and 10000).
+ */
+public class ClusterWiringBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int[] sizes = {1000, 10000};
+		if (args.length > 0) {
+			sizes = new int[args.length];
+			for (int i = 0; i < args.length; i++) {
+				sizes[i] = Integer.parseInt(args[i]);
+			}
+		}
+		PrintStream out = System.out;
+		for (int size : sizes) {
+			System.setOut(new PrintStream(new OutputStream() {
+				public void write(int b) {
+				}
+			}));
+			long sequentialMillis = connectSequentially(createComponents(size));
+			long bulkMillis = connectAll(createComponents(size));
+			System.setOut(out);
+			System.out.println(size + " components: sequential connect " + sequentialMillis + " ms, connectAll " + bulkMillis + " ms");
+		}
+	}
+
+	/**
+	 * @return a banana referenced by apples and a notifier that registers listeners
+	 */
+	private static Map<String, Component> createComponents(int size) {
+		Map<String, Component> components = new LinkedHashMap<String, Component>();
+		components.put("banana", new StandardComponent(new Banana(27)));
+		components.put("notifier", new StandardComponent(new Notifier()));
+		for (int i = 0; components.size() < size; i++) {
+			if (i % 2 == 0) {
+				components.put("apple" + i, new StandardComponent(new Apple()));
+			} else {
+				components.put("listener" + i, new StandardComponent(new Listener("listener" + i)));
+			}
+		}
+		return components;
+	}
+
+	private static long connectSequentially(Map<String, Component> components) {
+		StandardCluster cluster = new StandardCluster();
+		long start = System.currentTimeMillis();
+		for (Map.Entry<String, Component> entry : components.entrySet()) {
+			cluster.connect(entry.getKey(), entry.getValue());
+		}
+		return System.currentTimeMillis() - start;
+	}
+
+	private static long connectAll(Map<String, Component> components) {
+		StandardCluster cluster = new StandardCluster();
+		long start = System.currentTimeMillis();
+		cluster.connectAll(components, null);
+		return System.currentTimeMillis() - start;
+	}
+}
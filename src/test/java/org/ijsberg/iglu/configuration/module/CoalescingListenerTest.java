@@ -0,0 +1,160 @@
+/*
+ * Copyright 2011-2013 Jeroen Meetsma - IJsberg
+ *
+ * This file is part of Iglu.
+ *
+ * Iglu is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Iglu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Iglu.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.ijsberg.iglu.configuration.module;
+
+import org.ijsberg.iglu.sample.configuration.Listener;
+import org.ijsberg.iglu.sample.configuration.ListenerInterface;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ */
+public class CoalescingListenerTest {
+
+	private static class RecordingListener extends Listener {
+
+		private final List<String> messages = new ArrayList<String>();
+
+		private RecordingListener() {
+			super("recording");
+		}
+
+		public synchronized void notify(String message) {
+			super.notify(message);
+			messages.add(message);
+		}
+
+		public synchronized List<String> getMessages() {
+			return new ArrayList<String>(messages);
+		}
+	}
+
+	@Test
+	public void testCountWindow() throws Exception {
+		RecordingListener recordingListener = new RecordingListener();
+		CoalescingListener coalescingListener = new CoalescingListener(recordingListener, 60000, 3, false);
+		ListenerInterface listener = coalescingListener.createProxy(ListenerInterface.class);
+
+		listener.notify("a");
+		listener.notify("b");
+		assertTrue(recordingListener.getMessages().isEmpty());
+		listener.notify("c");
+		assertEquals(Arrays.asList("c"), recordingListener.getMessages());
+
+		listener.notify("d");
+		coalescingListener.flush();
+		assertEquals(Arrays.asList("c", "d"), recordingListener.getMessages());
+
+		assertEquals(4, coalescingListener.getNrofReceivedCalls());
+		assertEquals(2, coalescingListener.getNrofSuppressedCalls());
+		assertEquals(2, coalescingListener.getNrofDeliveredCalls());
+	}
+
+	@Test
+	public void testKeyedByFirstArgument() throws Exception {
+		RecordingListener recordingListener = new RecordingListener();
+		CoalescingListener coalescingListener = new CoalescingListener(recordingListener, 60000, 4, true);
+		ListenerInterface listener = coalescingListener.createProxy(ListenerInterface.class);
+
+		listener.notify("a");
+		listener.notify("b");
+		listener.notify("a");
+		listener.notify("c");
+		//batch in order of first arrival
+		assertEquals(Arrays.asList("a", "b", "c"), recordingListener.getMessages());
+		assertEquals(1, coalescingListener.getNrofSuppressedCalls());
+	}
+
+	@Test
+	public void testTimeWindow() throws Exception {
+		RecordingListener recordingListener = new RecordingListener();
+		CoalescingListener coalescingListener = new CoalescingListener(recordingListener, 20, 0, false);
+		ListenerInterface listener = coalescingListener.createProxy(ListenerInterface.class);
+
+		for (int i = 0; i < 1000; i++) {
+			listener.notify("message " + i);
+		}
+		for (int i = 0; i < 500 && !"message 999".equals(recordingListener.getLastMessage()); i++) {
+			Thread.sleep(10);
+		}
+		assertEquals("message 999", recordingListener.getLastMessage());
+		assertEquals(1000, coalescingListener.getNrofReceivedCalls());
+		assertEquals(1000, coalescingListener.getNrofSuppressedCalls() + coalescingListener.getNrofDeliveredCalls());
+		assertTrue(coalescingListener.getNrofSuppressedCalls() > 0);
+	}
+
+	@Test
+	public void testValueReturningMethodsInvokedDirectly() throws Exception {
+		RecordingListener recordingListener = new RecordingListener();
+		CoalescingListener coalescingListener = new CoalescingListener(recordingListener, 60000, 10, false);
+		ListenerInterface listener = coalescingListener.createProxy(ListenerInterface.class);
+
+		listener.notify("pending");
+		assertEquals("recording", listener.getId());
+		assertNull(listener.getLastMessage());
+		assertEquals(1, coalescingListener.getNrofReceivedCalls());
+	}
+
+	@Test
+	public void testClose() throws Exception {
+		RecordingListener recordingListener = new RecordingListener();
+		CoalescingListener coalescingListener = new CoalescingListener(recordingListener, 20, 0, false);
+		ListenerInterface listener = coalescingListener.createProxy(ListenerInterface.class);
+
+		listener.notify("pending");
+		coalescingListener.close();
+		listener.notify("too late");
+		Thread.sleep(100);
+		assertTrue(recordingListener.getMessages().isEmpty());
+		assertEquals(2, coalescingListener.getNrofSuppressedCalls());
+		assertEquals(0, coalescingListener.getNrofDeliveredCalls());
+	}
+
+	@Test
+	public void testFailuresAreCounted() throws Exception {
+		CoalescingListener coalescingListener = new CoalescingListener(new Listener("failing") {
+			public void notify(String message) {
+				throw new IllegalStateException("failed to handle " + message);
+			}
+		}, 60000, 1, false);
+		ListenerInterface listener = coalescingListener.createProxy(ListenerInterface.class);
+
+		listener.notify("a");
+		listener.notify("b");
+		assertEquals(2, coalescingListener.getNrofDeliveredCalls());
+		assertEquals(2, coalescingListener.getNrofFailedCalls());
+	}
+
+	@Test
+	public void testWindowMustBeLimitedInTime() throws Exception {
+		try {
+			//trailing invocations would never be delivered
+			new CoalescingListener(new RecordingListener(), 0, 10, false);
+			fail("IllegalArgumentException expected");
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2011-2013 Jeroen Meetsma - IJsberg
+ *
+ * This file is part of Iglu.
+ *
+ * Iglu is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Iglu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Iglu.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.ijsberg.iglu.configuration.module;
+
+import org.ijsberg.iglu.sample.configuration.*;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ */
+public class ComponentMatchIndexTest {
+
+	private ComponentMatchIndex index;
+
+	@Before
+	public void setUp() {
+		index = new ComponentMatchIndex();
+		index.add("apple", new StandardComponent(new Apple()));
+		index.add("banana", new StandardComponent(new Banana(27)));
+		index.add("notifier", new StandardComponent(new Notifier()));
+		index.add("listener", new StandardComponent(new Listener("listener")));
+	}
+
+	@Test
+	public void testReferences() throws Exception {
+		assertEquals(Collections.singleton("apple"), index.getReferencingIds("banana"));
+		assertEquals(Collections.singleton("banana"), index.getReferencedIds("apple"));
+		assertEquals(Collections.singleton("banana"), index.getReferencingIds("apple"));
+		assertTrue(index.getReferencingIds("notifier").isEmpty());
+		assertTrue(index.getReferencedIds("notifier").isEmpty());
+
+		//setter setBanana does not accept an Apple
+		index.remove("banana");
+		index.add("banana", new StandardComponent(new Apple()));
+		assertTrue(index.getReferencingIds("banana").isEmpty());
+		assertTrue(index.getReferencedIds("apple").isEmpty());
+	}
+
+	@Test
+	public void testReferencesAll() throws Exception {
+		assertFalse(ComponentMatchIndex.referencesAll(index.getComponent("apple")));
+		//may look up references by type
+		index.add("peach", new StandardComponent(new Peach()) {
+		});
+		assertEquals(4, index.getReferencedIds("peach").size());
+		assertTrue(index.getReferencingIds("notifier").contains("peach"));
+		assertEquals(2, index.getReferencingIds("banana").size());
+
+		index.remove("peach");
+		assertTrue(index.getReferencingIds("notifier").isEmpty());
+	}
+
+	@Test
+	public void testListeners() throws Exception {
+		assertEquals(Collections.singleton("notifier"), index.getRegisteringIds("listener"));
+		assertEquals(Collections.singleton("listener"), index.getRegisteredIds("notifier"));
+		assertTrue(index.getRegisteringIds("apple").isEmpty());
+
+		index.remove("listener");
+		assertTrue(index.getRegisteredIds("notifier").isEmpty());
+		assertNull(index.getComponent("listener"));
+	}
+}
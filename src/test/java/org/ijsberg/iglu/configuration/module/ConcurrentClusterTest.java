@@ -0,0 +1,164 @@
+/*
+ * Copyright 2011-2013 Jeroen Meetsma - IJsberg
+ *
+ * This file is part of Iglu.
+ *
+ * Iglu is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Iglu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Iglu.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.ijsberg.iglu.configuration.module;
+
+import org.ijsberg.iglu.configuration.Component;
+import org.ijsberg.iglu.configuration.ConfigurationException;
+import org.ijsberg.iglu.configuration.Facade;
+import org.ijsberg.iglu.sample.configuration.*;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentClusterTest {
+
+	private ConcurrentCluster fruit;
+	private Apple appleCore;
+	private Component appleComponent;
+	private Component bananaComponent;
+	private Elstar elstar;
+	private Component elstarComponent;
+
+	@Before
+	public void setUp() throws Exception {
+		fruit = new ConcurrentCluster();
+		appleCore = new Apple();
+		appleComponent = new StandardComponent(appleCore);
+		bananaComponent = new StandardComponent(new Banana(27));
+		elstar = new Elstar();
+		elstarComponent = new StandardComponent(elstar);
+	}
+
+	@Test
+	public void testConnect() throws Exception {
+		fruit.connect("banana", bananaComponent, BananaInterface.class);
+		fruit.connect("apple", appleComponent);
+		fruit.getFacade().connect(elstarComponent);
+
+		assertTrue(fruit.isConnectedInternally(appleComponent));
+		assertTrue(fruit.isConnectedExternally(elstarComponent));
+		assertTrue(fruit.isExposed("banana"));
+		assertFalse(fruit.isExposed("apple"));
+		assertEquals(2, fruit.getInternalComponents().size());
+		assertEquals(1, fruit.getExternalComponents().size());
+		assertEquals(27, appleCore.getIntFromBanana());
+		assertEquals(27, elstar.getIntFromBanana());
+		assertEquals(27, fruit.getFacade().getProxy("banana", BananaInterface.class).returnAnInt());
+
+		try {
+			fruit.getFacade().getProxy("apple", AppleInterface.class);
+			fail("apple is not exposed");
+		} catch (ConfigurationException expected) {
+		}
+
+		fruit.disconnect(bananaComponent);
+		assertFalse(fruit.isExposed("banana"));
+		assertEquals(1, fruit.getInternalComponents().size());
+	}
+
+	@Test
+	public void testSnapshotIsImmutable() throws Exception {
+		fruit.connect("banana", bananaComponent, BananaInterface.class);
+		Set<String> exposedComponentIds = fruit.getExposedComponentIds();
+		try {
+			exposedComponentIds.clear();
+			fail("UnsupportedOperationException expected");
+		} catch (UnsupportedOperationException expected) {
+		}
+		fruit.connect("apple", appleComponent, AppleInterface.class);
+		assertEquals(1, exposedComponentIds.size());
+		assertEquals(2, fruit.getExposedComponentIds().size());
+	}
+
+	@Test
+	public void testFreeze() throws Exception {
+		fruit.connect("banana", bananaComponent, BananaInterface.class);
+		fruit.freeze();
+		assertTrue(fruit.isFrozen());
+		try {
+			fruit.connect("apple", appleComponent);
+			fail("frozen cluster can not be reconfigured");
+		} catch (ConfigurationException expected) {
+		}
+		assertEquals(1, fruit.getInternalComponents().size());
+		fruit.thaw();
+		assertFalse(fruit.isFrozen());
+	}
+
+	@Test
+	public void testReadWhileReconfiguring() throws Exception {
+		fruit.connect("elstar", elstarComponent, ElstarInterface.class);
+		fruit.getFacade().connect(new StandardComponent(new Apple()));
+		//creates dispatcher in advance
+		fruit.getFacade().getProxy("elstar", ElstarInterface.class);
+
+		final AtomicBoolean reconfiguring = new AtomicBoolean(true);
+		final AtomicInteger nrofFailures = new AtomicInteger();
+		final AtomicInteger nrofReads = new AtomicInteger();
+		Thread[] readers = new Thread[4];
+		for (int t = 0; t < readers.length; t++) {
+			readers[t] = new Thread(new Runnable() {
+				public void run() {
+					Facade facade = fruit.getFacade();
+					try {
+						while (reconfiguring.get()) {
+							ElstarInterface proxy = facade.getProxy("elstar", ElstarInterface.class);
+							assertEquals("elstar", proxy.returnInput("elstar"));
+							assertTrue(fruit.isExposed("elstar"));
+							assertTrue(fruit.isConnectedInternally(elstarComponent));
+							assertTrue(facade.getExposedComponentIds().contains("elstar"));
+							assertEquals(1, fruit.getExposedInterfaces("elstar").length);
+							assertTrue(fruit.getInternalComponents().containsKey("elstar"));
+							nrofReads.incrementAndGet();
+						}
+					} catch (Throwable e) {
+						e.printStackTrace();
+						nrofFailures.incrementAndGet();
+					}
+				}
+			});
+			readers[t].start();
+		}
+		try {
+			for (int i = 0; i < 200; i++) {
+				Component component = new StandardComponent(new Apple());
+				fruit.connect("apple" + i, component, AppleInterface.class);
+				if (i % 2 == 0) {
+					fruit.disconnect(component);
+				}
+			}
+		} finally {
+			reconfiguring.set(false);
+		}
+		for (Thread reader : readers) {
+			reader.join();
+		}
+		assertEquals(0, nrofFailures.get());
+		assertTrue(nrofReads.get() > 0);
+		assertEquals(101, fruit.getInternalComponents().size());
+		assertEquals(101, fruit.getExposedComponentIds().size());
+	}
+}
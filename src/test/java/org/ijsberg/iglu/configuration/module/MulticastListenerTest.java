@@ -0,0 +1,165 @@
+/*
+ * Copyright 2011-2013 Jeroen Meetsma - IJsberg
+ *
+ * This file is part of Iglu.
+ *
+ * Iglu is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Iglu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Iglu.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.ijsberg.iglu.configuration.module;
+
+import org.ijsberg.iglu.sample.configuration.ListenerInterface;
+import org.ijsberg.iglu.sample.configuration.Subscriber;
+import org.ijsberg.iglu.sample.configuration.SubscriberInterface;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ */
+public class MulticastListenerTest {
+
+	private static class FailingSubscriber extends Subscriber {
+
+		private final String id;
+
+		private FailingSubscriber(String id) {
+			this.id = id;
+		}
+
+		public void receive(String message) {
+			super.receive(message);
+			throw new IllegalStateException(id + " failed");
+		}
+	}
+
+	@Test
+	public void testSequentialFanOut() throws Exception {
+		MulticastListener multicastListener = new MulticastListener(SubscriberInterface.class, null);
+		Subscriber subscriber1 = new Subscriber();
+		Subscriber subscriber2 = new Subscriber();
+		multicastListener.add(subscriber1);
+		multicastListener.add(subscriber2);
+		assertEquals(2, multicastListener.size());
+
+		SubscriberInterface proxy = (SubscriberInterface) multicastListener.getProxy();
+		proxy.receive("hello");
+		assertEquals("hello", subscriber1.getLastMessage());
+		assertEquals("hello", subscriber2.getLastMessage());
+
+		assertTrue(multicastListener.remove(subscriber2));
+		assertFalse(multicastListener.remove(subscriber2));
+		assertFalse(multicastListener.contains(subscriber2));
+		proxy.receive("bye");
+		assertEquals("bye", subscriber1.getLastMessage());
+		assertEquals("hello", subscriber2.getLastMessage());
+	}
+
+	@Test
+	public void testParallelFanOut() throws Exception {
+		ForkJoinPool pool = new ForkJoinPool(2);
+		MulticastListener multicastListener = new MulticastListener(SubscriberInterface.class, pool);
+		final CountDownLatch notified = new CountDownLatch(3);
+		for (int i = 0; i < 3; i++) {
+			multicastListener.add(new Subscriber() {
+				public void receive(String message) {
+					notified.countDown();
+					try {
+						//only returns if all members are notified at the same time
+						assertTrue(notified.await(10, TimeUnit.SECONDS));
+					} catch (InterruptedException e) {
+						throw new IllegalStateException(e);
+					}
+				}
+			});
+		}
+		((SubscriberInterface) multicastListener.getProxy()).receive("hello");
+		assertEquals(0, notified.getCount());
+		pool.shutdown();
+	}
+
+	@Test
+	public void testParallelFanOutFromPoolWorker() throws Exception {
+		//a single worker that waited for deliveries queued behind it would never see them done
+		ForkJoinPool pool = new ForkJoinPool(1);
+		MulticastListener multicastListener = new MulticastListener(SubscriberInterface.class, pool);
+		final Subscriber[] subscribers = new Subscriber[]{new Subscriber(), new Subscriber(), new Subscriber()};
+		for (Subscriber subscriber : subscribers) {
+			multicastListener.add(subscriber);
+		}
+		final SubscriberInterface proxy = (SubscriberInterface) multicastListener.getProxy();
+		pool.submit(new Callable<Object>() {
+			public Object call() {
+				proxy.receive("from worker");
+				return null;
+			}
+		}).get(10, TimeUnit.SECONDS);
+		for (Subscriber subscriber : subscribers) {
+			assertEquals("from worker", subscriber.getLastMessage());
+		}
+		pool.shutdown();
+	}
+
+	@Test
+	public void testFailuresAreAggregated() throws Exception {
+		testFailuresAreAggregated(new MulticastListener(SubscriberInterface.class, null));
+		testFailuresAreAggregated(new MulticastListener(SubscriberInterface.class, ForkJoinPool.commonPool()));
+	}
+
+	private void testFailuresAreAggregated(MulticastListener multicastListener) {
+		Subscriber subscriber = new Subscriber();
+		multicastListener.add(new FailingSubscriber("first"));
+		multicastListener.add(subscriber);
+		multicastListener.add(new FailingSubscriber("second"));
+		try {
+			((SubscriberInterface) multicastListener.getProxy()).receive("hello");
+			fail("MulticastException expected");
+		} catch (MulticastException expected) {
+			assertEquals(3, expected.getNrofListeners());
+			assertEquals(2, expected.getFailures().size());
+			assertEquals("first failed", expected.getCause().getMessage());
+			assertEquals("second failed", expected.getSuppressed()[0].getMessage());
+		}
+		assertEquals("hello", subscriber.getLastMessage());
+	}
+
+	@Test
+	public void testOnlyVoidInterfacesAreMulticast() throws Exception {
+		assertTrue(MulticastListener.isMulticastable(SubscriberInterface.class));
+		assertFalse(MulticastListener.isMulticastable(ListenerInterface.class));
+		try {
+			new MulticastListener(ListenerInterface.class, null);
+			fail("IllegalArgumentException expected");
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
+	@Test
+	public void testIdentity() throws Exception {
+		MulticastListener multicastListener = new MulticastListener(SubscriberInterface.class, null);
+		multicastListener.add(new Subscriber());
+		Object proxy = multicastListener.getProxy();
+
+		assertTrue(proxy.equals(proxy));
+		assertFalse(proxy.equals(new MulticastListener(SubscriberInterface.class, null).getProxy()));
+		assertEquals(System.identityHashCode(proxy), proxy.hashCode());
+		assertEquals("multicast to 1 listeners", proxy.toString());
+	}
+}
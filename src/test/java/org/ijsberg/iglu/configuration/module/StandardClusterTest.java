@@ -27,6 +27,18 @@ import org.ijsberg.iglu.sample.configuration.*;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.Serializable;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
 import static org.junit.Assert.*;
 
 public class StandardClusterTest {
@@ -103,6 +115,98 @@ public class StandardClusterTest {
 		assertEquals(0, fruit.getExposedComponentIds().size());
 	}
 
+	@Test
+	public void testReferenceByTypeWithoutSetter() throws Exception {
+		StandardComponent peachComponent = new StandardComponent(new Peach()) {
+		};
+		fruit.connect("peach", peachComponent);
+		fruit.connect("banana", new StandardComponent(new Banana(3)));
+		BananaInterface banana = peachComponent.getProxyForComponentReference(BananaInterface.class);
+		assertNotNull(banana);
+		assertEquals(3, banana.returnAnInt());
+
+		StandardComponent externalPeachComponent = new StandardComponent(new Peach()) {
+		};
+		fruit.getFacade().connect(externalPeachComponent);
+		fruit.expose("banana", BananaInterface.class);
+		assertNotNull(externalPeachComponent.getProxyForComponentReference(BananaInterface.class));
+	}
+
+	//implements only the methods of earlier versions of Component
+	private static class EarlyComponent implements Component {
+
+		private final Component component;
+
+		private EarlyComponent(Object implementation) {
+			component = new StandardComponent(implementation);
+		}
+
+		public void setProperties(Properties properties) {
+			component.setProperties(properties);
+		}
+
+		public Properties getProperties() {
+			return component.getProperties();
+		}
+
+		public Class<?>[] getInterfaces() {
+			return component.getInterfaces();
+		}
+
+		public <T> T createProxy(Class<T> interfaceClass) {
+			return component.createProxy(interfaceClass);
+		}
+
+		public <T> T getProxy(Class<T> interfaceClass) {
+			return component.getProxy(interfaceClass);
+		}
+
+		public void setReference(Facade facade, String componentId, Class<?>... interfaces) {
+			component.setReference(facade, componentId, interfaces);
+		}
+
+		public void removeDependency(String componentId) {
+			component.removeDependency(componentId);
+		}
+
+		public void register(Component component) {
+			this.component.register(component);
+		}
+
+		public void unregister(Component component) {
+			this.component.unregister(component);
+		}
+
+		public Set<Class<?>> getInjectedInterfaces(String componentId) {
+			return component.getInjectedInterfaces(componentId);
+		}
+
+		public void setInvocationIntercepter(Class<?> interfaceClass, InvocationHandler interceptor) {
+			component.setInvocationIntercepter(interfaceClass, interceptor);
+		}
+
+		public Object invoke(String methodName, Object... parameters) throws InvocationTargetException, NoSuchMethodException {
+			return component.invoke(methodName, parameters);
+		}
+
+		public boolean implementsInterface(Class<?> interfaceClass) {
+			return component.implementsInterface(interfaceClass);
+		}
+	}
+
+	@Test
+	public void testConnectComponentImplementingEarlierVersion() throws Exception {
+		fruit.connect("elstar", new EarlyComponent(elstar));
+		fruit.connect("banana", bananaComponent);
+		assertEquals(27, elstar.getIntFromBanana());
+
+		cluster.connect("notifier", new EarlyComponent(notifier));
+		cluster.connect("listener1", listenerComponent1);
+		assertEquals(1, notifier.getNrofRegisteredListeners());
+		cluster.connect("listener2", new EarlyComponent(listener2));
+		assertEquals(2, notifier.getNrofRegisteredListeners());
+	}
+
 	@Test
 	public void testConnectExternalComponent() throws Exception {
 		assertEquals(0, fruit.getExternalComponents().size());
@@ -631,4 +735,295 @@ public class StandardClusterTest {
 		} catch (ConfigurationException expected) {
 		}
 	}
+
+	@Test
+	public void testConnectUnderMultipleIds() throws Exception {
+		fruit.connect("apple", appleComponent);
+		fruit.connect("otherApple", appleComponent);
+		fruit.connect("banana", bananaComponent);
+		assertTrue(fruit.isConnectedInternally(appleComponent));
+		//membership is based on identity
+		assertFalse(fruit.isConnectedInternally(new StandardComponent(appleCore)));
+
+		fruit.disconnect(appleComponent);
+		assertFalse(fruit.isConnectedInternally(appleComponent));
+		assertEquals(1, fruit.getInternalComponents().size());
+		assertTrue(fruit.isConnectedInternally(bananaComponent));
+
+		fruit.connect("apple", appleComponent);
+		assertTrue(fruit.isConnectedInternally(appleComponent));
+		assertEquals(27, appleCore.getIntFromBanana());
+	}
+
+	@Test
+	public void testConnectAll() throws Exception {
+		cluster.connect("listener1", listenerComponent1);
+
+		Map<String, Component> components = new LinkedHashMap<String, Component>();
+		components.put("notifier", notifierComponent);
+		components.put("listener2", listenerComponent2);
+		components.put("apple", appleComponent);
+		components.put("banana", bananaComponent);
+		Map<String, Class<?>[]> exposedInterfaces = new HashMap<String, Class<?>[]>();
+		exposedInterfaces.put("banana", new Class<?>[]{BananaInterface.class});
+		cluster.connect(elstarComponent);
+		cluster.connectAll(components, exposedInterfaces);
+
+		assertEquals(5, cluster.getInternalComponents().size());
+		assertEquals(2, notifier.getNrofRegisteredListeners());
+		assertEquals(27, appleCore.getIntFromBanana());
+		assertTrue(cluster.isExposed("banana"));
+		assertFalse(cluster.isExposed("apple"));
+		//external component
+		assertEquals(27, elstar.getIntFromBanana());
+		assertEquals(1, elstarComponent.getInjectedInterfaces("banana").size());
+
+		cluster.disconnect(listenerComponent1);
+		assertEquals(1, notifier.getNrofRegisteredListeners());
+	}
+
+	@Test
+	public void testConnectAllRejectsInvalidConfiguration() throws Exception {
+		fruit.connect("apple", appleComponent);
+		Map<String, Component> components = new HashMap<String, Component>();
+		components.put("apple", elstarComponent);
+		try {
+			fruit.connectAll(components, null);
+			fail("ID is already registered");
+		} catch (ConfigurationException expected) {
+		}
+
+		components.clear();
+		components.put("banana", bananaComponent);
+		Map<String, Class<?>[]> exposedInterfaces = new HashMap<String, Class<?>[]>();
+		exposedInterfaces.put("elstar", new Class<?>[]{ElstarInterface.class});
+		try {
+			fruit.connectAll(components, exposedInterfaces);
+			fail("elstar is not among the components to connect");
+		} catch (ConfigurationException expected) {
+		}
+		assertEquals(1, fruit.getInternalComponents().size());
+	}
+
+	@Test
+	public void testExposePassesOnChangesOnly() throws Exception {
+		final int[] nrofUpdates = new int[2];
+		Component consumer = new StandardComponent(appleCore) {
+			public void updateReference(Facade facade, String componentId, Class<?>[] addedInterfaces, Class<?>[] removedInterfaces) {
+				nrofUpdates[0]++;
+				super.updateReference(facade, componentId, addedInterfaces, removedInterfaces);
+			}
+		};
+		Component bystander = new StandardComponent(notifier) {
+			public void updateReference(Facade facade, String componentId, Class<?>[] addedInterfaces, Class<?>[] removedInterfaces) {
+				nrofUpdates[1]++;
+			}
+		};
+		fruit.connect("banana", bananaComponent, BananaInterface.class);
+		fruit.getFacade().connect(consumer);
+		fruit.getFacade().connect(bystander);
+		assertEquals(1, consumer.getInjectedInterfaces("banana").size());
+
+		fruit.expose("banana", BananaInterface.class, Serializable.class);
+		assertEquals(2, consumer.getInjectedInterfaces("banana").size());
+		assertEquals(1, nrofUpdates[0]);
+
+		fruit.expose("banana", Serializable.class, BananaInterface.class);
+		assertEquals(1, nrofUpdates[0]);
+
+		fruit.expose("banana", Serializable.class);
+		assertEquals(2, nrofUpdates[0]);
+		assertEquals(Collections.<Class<?>>singleton(Serializable.class), consumer.getInjectedInterfaces("banana"));
+		//a subclass may look up references by type, so it is passed changes as well
+		assertEquals(2, nrofUpdates[1]);
+
+		fruit.expose("banana");
+		assertFalse(fruit.isExposed("banana"));
+		assertTrue(consumer.getInjectedInterfaces("banana").isEmpty());
+	}
+
+	@Test
+	public void testReplaceImplementation() throws Exception {
+		appleCore.setMessage("hello");
+		fruit.connect("apple", appleComponent);
+		fruit.connect("banana", bananaComponent, BananaInterface.class);
+		fruit.getFacade().connect(elstarComponent);
+		assertEquals(27, appleCore.getIntFromBanana());
+
+		Banana newBanana = new Banana(28);
+		assertSame(bananaCore, fruit.replaceImplementation("banana", newBanana));
+		assertEquals(28, appleCore.getIntFromBanana());
+		assertEquals(28, elstar.getIntFromBanana());
+		assertEquals("hello", newBanana.getMessageFromApple());
+
+		cluster.connect("notifier", notifierComponent);
+		cluster.connect("listener1", listenerComponent1);
+		cluster.connect("listener2", listenerComponent2);
+		Notifier newNotifier = new Notifier();
+		cluster.replaceImplementation("notifier", newNotifier);
+		assertEquals(2, newNotifier.getNrofRegisteredListeners());
+		cluster.disconnect(listenerComponent1);
+		assertEquals(1, newNotifier.getNrofRegisteredListeners());
+
+		try {
+			fruit.replaceImplementation("elstar", new Elstar());
+			fail("elstar is not an internal component");
+		} catch (ConfigurationException expected) {
+		}
+		fruit.freeze();
+		try {
+			fruit.replaceImplementation("banana", new Banana(29));
+			fail("frozen cluster can not be reconfigured");
+		} catch (ConfigurationException expected) {
+		}
+	}
+
+	@Test
+	public void testFacadeCachesProxies() throws Exception {
+		fruit.connect("banana", bananaComponent, BananaInterface.class);
+		Facade facade = fruit.getFacade();
+		assertSame(facade, fruit.getFacade());
+
+		BananaInterface proxy = facade.getProxy("banana", BananaInterface.class);
+		assertSame(proxy, facade.getProxy("banana", BananaInterface.class));
+		assertEquals(27, proxy.returnAnInt());
+
+		fruit.expose("banana", Serializable.class);
+		try {
+			facade.getProxy("banana", BananaInterface.class);
+			fail("BananaInterface is no longer exposed");
+		} catch (ConfigurationException expected) {
+		}
+		fruit.expose("banana", BananaInterface.class);
+		assertNotSame(proxy, facade.getProxy("banana", BananaInterface.class));
+
+		proxy = facade.getProxy("banana", BananaInterface.class);
+		fruit.disconnect(bananaComponent);
+		fruit.connect("banana", new StandardComponent(new Banana(28)), BananaInterface.class);
+		assertNotSame(proxy, facade.getProxy("banana", BananaInterface.class));
+		assertEquals(28, facade.getProxy("banana", BananaInterface.class).returnAnInt());
+	}
+
+	@Test
+	public void testStartAll() throws Exception {
+		Map<String, Component> components = new LinkedHashMap<String, Component>();
+		components.put("apple", appleComponent);
+		components.put("banana", bananaComponent);
+		components.put("elstar", elstarComponent);
+		Properties properties = new Properties();
+		properties.setProperty("message", "hello");
+		Map<String, Properties> propertiesById = new HashMap<String, Properties>();
+		propertiesById.put("elstar", properties);
+		Map<String, Class<?>[]> exposedInterfaces = new HashMap<String, Class<?>[]>();
+		exposedInterfaces.put("banana", new Class<?>[]{BananaInterface.class});
+
+		StartupReport report = fruit.startAll(components, propertiesById, exposedInterfaces);
+		assertEquals(3, fruit.getInternalComponents().size());
+		assertTrue(fruit.isExposed("banana"));
+		assertEquals(27, appleCore.getIntFromBanana());
+		assertEquals(27, elstar.getIntFromBanana());
+		assertEquals("hello", elstar.getMessage());
+		assertEquals(2, report.getLevels().size());
+		assertEquals("elstar", report.getCriticalPath().get(report.getCriticalPath().size() - 1));
+	}
+
+	@Test
+	public void testConnectWiresMatchingComponentsOnly() throws Exception {
+		cluster.connect("apple", appleComponent);
+		cluster.connect("notifier", notifierComponent);
+		cluster.connect("banana", bananaComponent);
+		cluster.connect("listener1", listenerComponent1);
+
+		assertEquals(2, appleComponent.getInjectedInterfaces("banana").size());
+		assertEquals(1, bananaComponent.getInjectedInterfaces("apple").size());
+		assertTrue(notifierComponent.getInjectedInterfaces("apple").isEmpty());
+		assertTrue(appleComponent.getInjectedInterfaces("notifier").isEmpty());
+		assertEquals(1, notifier.getNrofRegisteredListeners());
+
+		cluster.disconnect(bananaComponent);
+		assertTrue(appleComponent.getInjectedInterfaces("banana").isEmpty());
+		cluster.disconnect(listenerComponent1);
+		assertEquals(0, notifier.getNrofRegisteredListeners());
+	}
+
+	@Test
+	public void testFreeze() throws Exception {
+		fruit.connect("apple", appleComponent);
+		fruit.connect("banana", bananaComponent);
+		assertNotSame(bananaCore, appleCore.getBanana());
+		assertTrue(Proxy.isProxyClass(appleCore.getBanana().getClass()));
+
+		fruit.freeze();
+		assertTrue(fruit.isFrozen());
+		assertSame(bananaCore, appleCore.getBanana());
+		assertEquals(27, appleCore.getIntFromBanana());
+
+		try {
+			fruit.connect("elstar", elstarComponent);
+			fail("frozen cluster can not be reconfigured");
+		} catch (ConfigurationException expected) {
+		}
+		try {
+			fruit.disconnect(bananaComponent);
+			fail("frozen cluster can not be reconfigured");
+		} catch (ConfigurationException expected) {
+		}
+		try {
+			fruit.expose("banana", BananaInterface.class);
+			fail("frozen cluster can not be reconfigured");
+		} catch (ConfigurationException expected) {
+		}
+		try {
+			fruit.freeze();
+			fail("cluster is frozen already");
+		} catch (ConfigurationException expected) {
+		}
+		assertFalse(fruit.isConnected(elstarComponent));
+
+		fruit.thaw();
+		assertFalse(fruit.isFrozen());
+		assertNotSame(bananaCore, appleCore.getBanana());
+		assertEquals(27, appleCore.getIntFromBanana());
+		fruit.connect("elstar", elstarComponent);
+	}
+
+	@Test
+	public void testFreezeWithIntercepter() throws Exception {
+		final int[] nrofInterceptions = new int[1];
+		bananaComponent.setInvocationIntercepter(BananaInterface.class, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				nrofInterceptions[0]++;
+				return method.invoke(proxy, args);
+			}
+		});
+		fruit.connect("apple", appleComponent);
+		fruit.connect("banana", bananaComponent);
+
+		fruit.freeze();
+		assertNotSame(bananaCore, appleCore.getBanana());
+		assertEquals(27, appleCore.getIntFromBanana());
+		assertEquals(1, nrofInterceptions[0]);
+	}
+
+	@Test
+	public void testFreezeKeepsProxiesInExternalComponent() throws Exception {
+		fruit.connect("banana", bananaComponent, BananaInterface.class);
+		fruit.connect(appleComponent);
+
+		fruit.freeze();
+		//the implementation would give access to all its interfaces and methods
+		assertNotSame(bananaCore, appleCore.getBanana());
+		assertFalse(appleCore.getBanana() instanceof Banana);
+		assertEquals(27, appleCore.getIntFromBanana());
+
+		try {
+			fruit.connect(elstarComponent);
+			fail("frozen cluster can not be reconfigured");
+		} catch (ConfigurationException expected) {
+		}
+
+		fruit.thaw();
+		assertNotSame(bananaCore, appleCore.getBanana());
+		assertEquals(27, appleCore.getIntFromBanana());
+	}
 }
@@ -23,11 +23,22 @@ import org.ijsberg.iglu.configuration.Cluster;
 import org.ijsberg.iglu.configuration.Component;
 import org.ijsberg.iglu.configuration.ConfigurationException;
 import org.ijsberg.iglu.sample.configuration.*;
+import org.ijsberg.iglu.sample.configuration.shop.ProductInquiryCounter;
+import org.ijsberg.iglu.sample.configuration.shop.Shop;
+import org.ijsberg.iglu.sample.configuration.shop.ShopImpl;
+import org.ijsberg.iglu.util.reflection.MethodSelectors;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.util.Properties;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.*;
 
@@ -276,6 +287,294 @@ public class StandardComponentTest {
 		assertEquals("Hello world", proxy.getMessage());
 	}
 
+	@Test
+	public void testInterceptorChain() throws Exception {
+
+		Properties properties = new Properties();
+		properties.setProperty("message", "Hello");
+		appleComponent.setProperties(properties);
+
+		AppleInterface proxy = appleComponent.createProxy(AppleInterface.class);
+		GetMessageInterceptor world = new GetMessageInterceptor(" world");
+		GetMessageInterceptor baby = new GetMessageInterceptor(" baby");
+
+		appleComponent.addInvocationIntercepter(AppleInterface.class, world);
+		assertEquals("Hello world", proxy.getMessage());
+		//intercepter at end of chain is invoked last and gets the result of the implementation
+		appleComponent.addInvocationIntercepter(AppleInterface.class, baby);
+		assertEquals("Hello baby world", proxy.getMessage());
+
+		GetMessageInterceptor hi = new GetMessageInterceptor(" hi");
+		appleComponent.addInvocationIntercepter(AppleInterface.class, 1, hi);
+		assertEquals(3, appleComponent.getInvocationIntercepters(AppleInterface.class).size());
+		assertSame(hi, appleComponent.getInvocationIntercepters(AppleInterface.class).get(1));
+		assertEquals("Hello baby hi world", proxy.getMessage());
+		assertEquals("not intercepted", proxy.returnInput("not intercepted"));
+
+		assertTrue(appleComponent.removeInvocationIntercepter(AppleInterface.class, world));
+		assertFalse(appleComponent.removeInvocationIntercepter(AppleInterface.class, world));
+		assertEquals("Hello baby hi", proxy.getMessage());
+
+		//setting an intercepter replaces the chain
+		appleComponent.setInvocationIntercepter(AppleInterface.class, world);
+		assertEquals("Hello world", proxy.getMessage());
+		appleComponent.setInvocationIntercepter(AppleInterface.class, null);
+		assertEquals("Hello", proxy.getMessage());
+		assertTrue(appleComponent.getInvocationIntercepters(AppleInterface.class).isEmpty());
+
+		try {
+			appleComponent.addInvocationIntercepter(AppleInterface.class, 1, world);
+			fail("IndexOutOfBoundsException expected");
+		} catch (IndexOutOfBoundsException expected) {
+		}
+	}
+
+	@Test
+	public void testInterceptorChainForGeneratedProxy() throws Exception {
+
+		appleComponent.setGeneratedProxies(true);
+		Properties properties = new Properties();
+		properties.setProperty("message", "Hello");
+		appleComponent.setProperties(properties);
+
+		AppleInterface proxy = appleComponent.createProxy(AppleInterface.class);
+		appleComponent.addInvocationIntercepter(AppleInterface.class, new GetMessageInterceptor(" world"));
+		appleComponent.addInvocationIntercepter(AppleInterface.class, 0, new GetMessageInterceptor(" baby"));
+		assertEquals("Hello world baby", proxy.getMessage());
+		assertEquals("true-23", proxy.returnInput(true, '-', 23));
+	}
+
+	@Test
+	public void testReplaceImplementation() throws Exception {
+		Properties properties = new Properties();
+		properties.setProperty("message", "hello");
+		appleComponent.setProperties(properties);
+		apple.setSomeInt(1);
+		AppleInterface proxy = appleComponent.createProxy(AppleInterface.class);
+		appleComponent.setGeneratedProxies(true);
+		AppleInterface generatedProxy = appleComponent.createProxy(AppleInterface.class);
+		appleComponent.setInvocationIntercepter(AppleInterface.class, new GetMessageInterceptor("!"));
+		assertEquals(1, generatedProxy.getSomeInt());
+
+		Apple newApple = new Apple();
+		newApple.setSomeInt(2);
+		assertSame(apple, appleComponent.replaceImplementation(newApple));
+		assertEquals("hello", newApple.getMessage());
+		assertEquals(2, proxy.getSomeInt());
+		assertEquals(2, generatedProxy.getSomeInt());
+		assertEquals("hello!", proxy.getMessage());
+		assertEquals("hello!", generatedProxy.getMessage());
+		assertEquals(2, appleComponent.invoke("getSomeInt"));
+		assertEquals(appleComponent, new StandardComponent(apple));
+
+		try {
+			appleComponent.replaceImplementation(new Banana(27));
+			fail("IllegalArgumentException expected");
+		} catch (IllegalArgumentException expected) {
+		}
+		assertEquals(2, proxy.getSomeInt());
+	}
+
+	@Test
+	public void testInvokeConcurrentlyWhileIntercepting() throws Exception {
+		apple.setMessage("hello");
+		final String message = apple.getMessage();
+		final AppleInterface firstProxy = appleComponent.getProxy(AppleInterface.class);
+		final AtomicBoolean intercepting = new AtomicBoolean(true);
+		final AtomicInteger nrofFailures = new AtomicInteger();
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread(new Runnable() {
+				public void run() {
+					try {
+						while (intercepting.get()) {
+							AppleInterface proxy = appleComponent.getProxy(AppleInterface.class);
+							assertSame(firstProxy, proxy);
+							String result = proxy.getMessage();
+							assertTrue(result, result.equals(message) || result.equals(message + "!"));
+						}
+					} catch (Throwable e) {
+						e.printStackTrace();
+						nrofFailures.incrementAndGet();
+					}
+				}
+			});
+			threads[t].start();
+		}
+		try {
+			for (int i = 0; i < 500; i++) {
+				appleComponent.setInvocationIntercepter(AppleInterface.class, new GetMessageInterceptor("!"));
+				appleComponent.setInvocationIntercepter(AppleInterface.class, null);
+			}
+		} finally {
+			intercepting.set(false);
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(0, nrofFailures.get());
+		assertEquals(message, firstProxy.getMessage());
+		appleComponent.setInvocationIntercepter(AppleInterface.class, new GetMessageInterceptor("!"));
+		assertEquals(message + "!", firstProxy.getMessage());
+	}
+
+	@Test
+	public void testSelectiveInterceptor() throws Exception {
+
+		ShopImpl shop = new ShopImpl("The Drugstore");
+		StandardComponent shopComponent = new StandardComponent(shop);
+		shopComponent.setGeneratedProxies(true);
+		Shop proxy = shopComponent.createProxy(Shop.class);
+
+		ProductInquiryCounter counter = new ProductInquiryCounter();
+		final int[] nrofInterceptions = new int[1];
+		shopComponent.addInvocationIntercepter(Shop.class, counter, MethodSelectors.byName("findProductById"));
+		shopComponent.addInvocationIntercepter(Shop.class, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				nrofInterceptions[0]++;
+				return method.invoke(proxy, args);
+			}
+		}, MethodSelectors.bySignature("getName"));
+
+		assertEquals("The Drugstore", proxy.getName());
+		assertEquals(1, nrofInterceptions[0]);
+		assertEquals(0, counter.getNrofInquiries());
+		proxy.findProductById(1);
+		assertEquals(1, counter.getNrofInquiries());
+		assertEquals(1, nrofInterceptions[0]);
+		proxy.collectPhotos("none");
+		assertEquals(1, counter.getNrofInquiries());
+		assertEquals(1, nrofInterceptions[0]);
+
+		//also applies to invocations by name
+		shopComponent.invoke("findProductById", 2);
+		assertEquals(2, counter.getNrofInquiries());
+	}
+
+	@Test
+	public void testSelectiveInterceptorDoesNotShadowDeclaringInterface() throws Exception {
+
+		Properties properties = new Properties();
+		properties.setProperty("message", "Hello");
+		elstarComponent.setProperties(properties);
+		ElstarInterface proxy = elstarComponent.createProxy(ElstarInterface.class);
+
+		elstarComponent.setInvocationIntercepter(AppleInterface.class, new GetMessageInterceptor(" world"));
+		//no intercepter registered for ElstarInterface applies to getMessage
+		elstarComponent.addInvocationIntercepter(ElstarInterface.class, new GetMessageInterceptor(" baby"), MethodSelectors.byName("returnInput"));
+		assertEquals("Hello world", proxy.getMessage());
+	}
+
+	@Test
+	public void testGeneratedProxy() throws Exception {
+
+		appleComponent.setGeneratedProxies(true);
+		Properties properties = new Properties();
+		properties.setProperty("message", "Hello");
+		appleComponent.setProperties(properties);
+
+		AppleInterface proxy = appleComponent.createProxy(AppleInterface.class);
+		assertFalse(Proxy.isProxyClass(proxy.getClass()));
+		assertEquals("Hello", proxy.getMessage());
+		assertEquals("true-23", proxy.returnInput(true, '-', 23));
+
+		appleComponent.setInvocationIntercepter(AppleInterface.class, new GetMessageInterceptor(" world"));
+		assertEquals("Hello world", proxy.getMessage());
+		assertEquals("not intercepted", proxy.returnInput("not intercepted"));
+
+		//interfaces of the JDK can not be implemented by generated classes
+		Component bananaComponent = new StandardComponent(new Banana(27));
+		((StandardComponent) bananaComponent).setGeneratedProxies(true);
+		assertTrue(Proxy.isProxyClass(bananaComponent.createProxy(Serializable.class).getClass()));
+	}
+
+	@Test
+	public void testGeneratedProxyInvocationHandler() throws Exception {
+
+		StandardComponent elstarComponent = new StandardComponent(elstar);
+		elstarComponent.setGeneratedProxies(true);
+		Properties properties = new Properties();
+		properties.setProperty("message", "Hello");
+		elstarComponent.setProperties(properties);
+
+		ElstarInterface proxy = elstarComponent.createProxy(ElstarInterface.class);
+		AppleInterface proxy2 = elstarComponent.createProxy(AppleInterface.class);
+
+		//proxy for ElstarInterface is affected, since AppleInterface is declaring class
+		elstarComponent.setInvocationIntercepter(AppleInterface.class, new GetMessageInterceptor(" world"));
+		assertEquals("Hello world", proxy.getMessage());
+
+		elstarComponent.setInvocationIntercepter(ElstarInterface.class, new GetMessageInterceptor(" baby"));
+		assertEquals("Hello baby", proxy.getMessage());
+		assertEquals("Hello world", proxy2.getMessage());
+	}
+
+	@Test
+	public void testGeneratedProxyDoesNotAllocate() throws Exception {
+
+		StandardComponent shopComponent = new StandardComponent(new ShopImpl("The Drugstore"));
+		shopComponent.setGeneratedProxies(true);
+		Shop shop = shopComponent.createProxy(Shop.class);
+		appleComponent.setGeneratedProxies(true);
+		AppleInterface appleProxy = appleComponent.createProxy(AppleInterface.class);
+		//an intercepter for another interface must not affect these proxies
+		elstarComponent.setInvocationIntercepter(ElstarInterface.class, new GetMessageInterceptor(" world"));
+
+		assertNoAllocation(shop, appleProxy, 0);
+	}
+
+	@Test
+	public void testGeneratedProxyDoesNotAllocateAfterReplaceImplementation() throws Exception {
+
+		StandardComponent shopComponent = new StandardComponent(new ShopImpl("The Drugstore"));
+		shopComponent.setGeneratedProxies(true);
+		Shop shop = shopComponent.createProxy(Shop.class);
+		appleComponent.setGeneratedProxies(true);
+		AppleInterface staleProxy = appleComponent.createProxy(AppleInterface.class);
+		Apple newApple = new Apple();
+		newApple.setSomeInt(0);
+		appleComponent.replaceImplementation(newApple);
+		//refers to the new implementation directly
+		AppleInterface appleProxy = appleComponent.createProxy(AppleInterface.class);
+
+		//boxed if intercepted
+		newApple.setSomeInt(1000);
+		assertEquals(1000, staleProxy.getSomeInt());
+		assertNoAllocation(shop, appleProxy, 1000);
+	}
+
+	private static void assertNoAllocation(Shop shop, AppleInterface appleProxy, int someInt) {
+		if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+			return;
+		}
+		com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		if (!threadMXBean.isThreadAllocatedMemorySupported() || !threadMXBean.isThreadAllocatedMemoryEnabled()) {
+			return;
+		}
+
+		long threadId = Thread.currentThread().getId();
+		int nrofInvocations = 100000;
+		long checksum = invokePrimitiveMethods(shop, appleProxy, nrofInvocations);
+		long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+		checksum += invokePrimitiveMethods(shop, appleProxy, nrofInvocations);
+		long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+		assertEquals(2L * nrofInvocations * someInt, checksum);
+		//allow for some allocation by the measurement itself
+		assertTrue("allocated " + allocated + " bytes in " + nrofInvocations + " invocations", allocated < nrofInvocations);
+	}
+
+	private static long invokePrimitiveMethods(Shop shop, AppleInterface apple, int nrofInvocations) {
+		long checksum = 0;
+		for (long i = 0; i < nrofInvocations; i++) {
+			if (shop.findProductById(i + 1000) != null) {
+				checksum++;
+			}
+			checksum += apple.getSomeInt();
+		}
+		return checksum;
+	}
+
 	@Test
 	public void testSetInvocationHandler4() throws Exception {
 		try {
@@ -358,6 +657,22 @@ public class StandardComponentTest {
 		} */
 	}
 
+	@Test
+	public void testSetLazyReference() throws Exception {
+
+		Component bananaComponent = new StandardComponent(new Banana(27));
+		Cluster fruit = new StandardCluster();
+		appleComponent.setLazyReferences(true);
+
+		appleComponent.setReference(fruit.getFacade(), "banana", BananaInterface.class);
+		assertEquals(1, appleComponent.getInjectedInterfaces("banana").size());
+		assertNotNull(apple.getBanana());
+
+		fruit.connect("banana", bananaComponent, bananaComponent.getInterfaces());
+		assertEquals(27, apple.getIntFromBanana());
+		assertEquals(27, apple.getIntFromBanana());
+	}
+
 
 	@Test
 	public void testRemoveDependency() throws Exception {
@@ -442,6 +757,157 @@ public class StandardComponentTest {
 		assertEquals(0, notifier.getNrofRegisteredListeners());
 	}
 
+	@Test
+	public void testRegisterAsynchronousListener() throws Exception {
+
+		((StandardComponent) notifierComponent).setAsynchronousListeners(null, 10);
+		notifierComponent.register(listenerComponent1);
+		assertEquals(1, notifier.getNrofRegisteredListeners());
+
+		notifier.notifyListeners("async");
+		for (int i = 0; i < 100 && listener1.getLastMessage() == null; i++) {
+			Thread.sleep(10);
+		}
+		assertEquals("async", listener1.getLastMessage());
+
+		notifierComponent.unregister(listenerComponent1);
+		assertEquals(0, notifier.getNrofRegisteredListeners());
+	}
+
+	@Test
+	public void testRegisterAsynchronousListenerDiscardingWhenFull() throws Exception {
+
+		//never delivers
+		((StandardComponent) notifierComponent).setAsynchronousListeners(new Executor() {
+			public void execute(Runnable command) {
+			}
+		}, 1, true);
+		notifierComponent.register(listenerComponent1);
+
+		notifier.notifyListeners("first");
+		notifier.notifyListeners("second");
+		assertEquals(1, ((StandardComponent) notifierComponent).getNrofDiscardedNotifications());
+		assertEquals(0, ((StandardComponent) notifierComponent).getNrofDelayedNotifications());
+
+		//metrics are kept after unregister
+		notifierComponent.unregister(listenerComponent1);
+		assertEquals(1, ((StandardComponent) notifierComponent).getNrofDiscardedNotifications());
+		assertNull(listener1.getLastMessage());
+	}
+
+	@Test
+	public void testRegisterMulticastListener() throws Exception {
+
+		Publisher publisher = new Publisher();
+		StandardComponent publisherComponent = new StandardComponent(publisher);
+		publisherComponent.setMulticastListeners(true, false);
+		Subscriber subscriber1 = new Subscriber();
+		Subscriber subscriber2 = new Subscriber();
+		Component subscriberComponent1 = new StandardComponent(subscriber1);
+		Component subscriberComponent2 = new StandardComponent(subscriber2);
+
+		publisherComponent.register(subscriberComponent1);
+		publisherComponent.register(subscriberComponent2);
+		publisherComponent.register(subscriberComponent2);
+		//one listener fans out to both
+		assertEquals(1, publisher.getNrofSubscribers());
+
+		publisher.publish("multicast");
+		assertEquals("multicast", subscriber1.getLastMessage());
+		assertEquals("multicast", subscriber2.getLastMessage());
+
+		publisherComponent.unregister(subscriberComponent1);
+		assertEquals(1, publisher.getNrofSubscribers());
+		publisher.publish("single");
+		assertEquals("multicast", subscriber1.getLastMessage());
+		assertEquals("single", subscriber2.getLastMessage());
+
+		publisherComponent.unregister(subscriberComponent2);
+		assertEquals(0, publisher.getNrofSubscribers());
+
+		publisherComponent.register(subscriberComponent1);
+		assertEquals(1, publisher.getNrofSubscribers());
+		publisher.publish("again");
+		assertEquals("again", subscriber1.getLastMessage());
+	}
+
+	@Test
+	public void testNoMulticastForListenersThatReturnValues() throws Exception {
+
+		//Notifier keeps track of listeners by their IDs
+		((StandardComponent) notifierComponent).setMulticastListeners(true, false);
+		notifierComponent.register(listenerComponent1);
+		notifierComponent.register(listenerComponent2);
+		assertEquals(2, notifier.getNrofRegisteredListeners());
+
+		notifierComponent.unregister(listenerComponent1);
+		notifierComponent.unregister(listenerComponent2);
+		assertEquals(0, notifier.getNrofRegisteredListeners());
+
+		notifierComponent.register(new StandardComponent(new Listener("3")));
+		assertEquals(1, notifier.getNrofRegisteredListeners());
+	}
+
+	@Test
+	public void testRegisterCoalescingListener() throws Exception {
+
+		((StandardComponent) notifierComponent).setCoalescingListeners(60000, 3, false);
+		notifierComponent.register(listenerComponent1);
+		assertEquals(1, notifier.getNrofRegisteredListeners());
+
+		notifier.notifyListeners("first");
+		notifier.notifyListeners("second");
+		assertNull(listener1.getLastMessage());
+		notifier.notifyListeners("third");
+		assertEquals("third", listener1.getLastMessage());
+		assertEquals(3, ((StandardComponent) notifierComponent).getNrofReceivedNotifications());
+		assertEquals(2, ((StandardComponent) notifierComponent).getNrofSuppressedNotifications());
+
+		//held notification is discarded
+		notifier.notifyListeners("fourth");
+		notifierComponent.unregister(listenerComponent1);
+		assertEquals(0, notifier.getNrofRegisteredListeners());
+		assertEquals("third", listener1.getLastMessage());
+		assertEquals(4, ((StandardComponent) notifierComponent).getNrofReceivedNotifications());
+		assertEquals(3, ((StandardComponent) notifierComponent).getNrofSuppressedNotifications());
+		assertEquals(0, ((StandardComponent) notifierComponent).getNrofFailedNotifications());
+	}
+
+	@Test
+	public void testRegisterCoalescingAsynchronousListener() throws Exception {
+
+		final String[] deliveringThread = new String[1];
+		Component listenerComponent = new StandardComponent(new Listener("slow") {
+			public void notify(String message) {
+				deliveringThread[0] = Thread.currentThread().getName();
+				super.notify(message);
+			}
+		});
+		((StandardComponent) notifierComponent).setAsynchronousListeners(true);
+		((StandardComponent) notifierComponent).setCoalescingListeners(10, 0, false);
+		notifierComponent.register(listenerComponent);
+
+		notifier.notifyListeners("coalesced");
+		for (int i = 0; i < 100 && deliveringThread[0] == null; i++) {
+			Thread.sleep(10);
+		}
+		//the timer thread only queues notifications for the asynchronous listener
+		assertNotNull(deliveringThread[0]);
+		assertFalse("iglu-coalescing".equals(deliveringThread[0]));
+	}
+
+	@Test
+	public void testGetListenerTypes() throws Exception {
+
+		assertEquals(1, notifierComponent.getListenerTypes().size());
+		assertTrue(notifierComponent.getListenerTypes().contains(ListenerInterface.class));
+		assertTrue(appleComponent.getListenerTypes().isEmpty());
+		assertSame(notifierComponent.getListenerTypes(), new StandardComponent(new Notifier()).getListenerTypes());
+		//not a notifier
+		appleComponent.register(listenerComponent1);
+		appleComponent.unregister(listenerComponent1);
+	}
+
 	@Test
 	public void testUnregisterListenerNotRegistered() throws Exception {
 
@@ -488,5 +954,34 @@ public class StandardComponentTest {
 		assertEquals("falseA12", result);
 	}
 
+	@Test
+	public void testRepeatedInvoke() throws Exception {
+		Properties properties = new Properties();
+		properties.setProperty("message", "Hello");
+		appleComponent.setProperties(properties);
+
+		for (int i = 0; i < 3; i++) {
+			assertEquals("true-" + i, appleComponent.invoke("returnInput", "true", "-", "" + i));
+			assertEquals("Hello", appleComponent.invoke("getMessage"));
+		}
+		//resolved before with arguments of the same classes, but conversion fails
+		try {
+			appleComponent.invoke("returnInput", "true", "=", "twelve");
+			fail("NumberFormatException expected");
+		} catch (NumberFormatException expected) {
+		}
+		assertEquals("x", appleComponent.invoke("returnInput", "x"));
+
+		//other component with same implementation class
+		Apple otherApple = new Apple();
+		otherApple.setMessage("Hi");
+		StandardComponent otherAppleComponent = new StandardComponent(otherApple);
+		assertEquals("Hi", otherAppleComponent.invoke("getMessage"));
+
+		//intercepters apply to resolved invocations
+		appleComponent.setInvocationIntercepter(AppleInterface.class, new GetMessageInterceptor(" world"));
+		assertEquals("Hello world", appleComponent.invoke("getMessage"));
+	}
+
 
 }
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2011-2013 Jeroen Meetsma - IJsberg
+ *
+ * This file is part of Iglu.
+ *
+ * Iglu is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Iglu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Iglu.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.ijsberg.iglu.configuration.module;
+
+import org.ijsberg.iglu.configuration.Component;
+import org.ijsberg.iglu.sample.configuration.*;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class StartupPlanTest {
+
+	@Test
+	public void testLevels() throws Exception {
+		Map<String, Component> componentsById = new LinkedHashMap<String, Component>();
+		componentsById.put("notifier", new StandardComponent(new Notifier()));
+		componentsById.put("listener1", new StandardComponent(new Listener("listener 1")));
+		componentsById.put("listener2", new StandardComponent(new Listener("listener 2")));
+		componentsById.put("peach", new StandardComponent(new Peach()));
+
+		List<List<String>> levels = new StartupPlan(componentsById).getLevels();
+		assertEquals(2, levels.size());
+		assertEquals(new HashSet<String>(Arrays.asList("listener1", "listener2", "peach")), new HashSet<String>(levels.get(0)));
+		assertEquals(Collections.singletonList("notifier"), levels.get(1));
+	}
+
+	@Test
+	public void testMutualDependenciesOnSameLevel() throws Exception {
+		Map<String, Component> componentsById = new LinkedHashMap<String, Component>();
+		componentsById.put("apple", new StandardComponent(new Apple()));
+		componentsById.put("banana", new StandardComponent(new Banana(27)));
+		componentsById.put("elstar", new StandardComponent(new Elstar()));
+
+		List<List<String>> levels = new StartupPlan(componentsById).getLevels();
+		assertEquals(2, levels.size());
+		assertEquals(new HashSet<String>(Arrays.asList("apple", "banana")), new HashSet<String>(levels.get(0)));
+		//elstar is an apple that references banana
+		assertEquals(Collections.singletonList("elstar"), levels.get(1));
+	}
+
+	@Test
+	public void testExecute() throws Exception {
+		Apple apple = new Apple();
+		Map<String, Component> componentsById = new LinkedHashMap<String, Component>();
+		componentsById.put("banana", new StandardComponent(new Banana(27)));
+		componentsById.put("elstar", new StandardComponent(apple));
+		Properties properties = new Properties();
+		properties.setProperty("message", "hello");
+		Map<String, Properties> propertiesById = new HashMap<String, Properties>();
+		propertiesById.put("elstar", properties);
+
+		StartupReport report = new StartupPlan(componentsById).execute(propertiesById, new ForkJoinPool(2));
+		assertEquals("hello", apple.getMessage());
+		assertEquals(Arrays.asList("banana", "elstar"), report.getCriticalPath());
+		assertEquals(0, report.getDuration("banana"));
+		assertTrue(report.getCriticalPathDuration() <= report.getDuration());
+		assertEquals(2, report.getLevels().size());
+	}
+
+	@Test
+	public void testExecuteMutualDependenciesOneByOne() throws Exception {
+		final List<String> started = Collections.synchronizedList(new ArrayList<String>());
+		final AtomicInteger nrofRunning = new AtomicInteger();
+		final AtomicInteger maxNrofRunning = new AtomicInteger();
+		Map<String, Component> componentsById = new LinkedHashMap<String, Component>();
+		//banana and apple reference each other
+		for (String componentId : Arrays.asList("banana", "apple")) {
+			final String id = componentId;
+			componentsById.put(id, new StandardComponent("banana".equals(id) ? new Banana(27) : new Apple()) {
+				public void setProperties(Properties properties) {
+					int running = nrofRunning.incrementAndGet();
+					maxNrofRunning.set(Math.max(maxNrofRunning.get(), running));
+					started.add(id);
+					try {
+						Thread.sleep(20);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					nrofRunning.decrementAndGet();
+				}
+			});
+		}
+		Map<String, Properties> propertiesById = new HashMap<String, Properties>();
+		propertiesById.put("banana", new Properties());
+		propertiesById.put("apple", new Properties());
+
+		StartupReport report = new StartupPlan(componentsById).execute(propertiesById, new ForkJoinPool(2));
+		assertEquals(1, report.getLevels().size());
+		assertEquals(Arrays.asList("banana", "apple"), started);
+		assertEquals(1, maxNrofRunning.get());
+		assertEquals(Arrays.asList("banana", "apple"), report.getCriticalPath());
+	}
+}
@@ -33,6 +33,12 @@ public class Notifier implements NotifierInterface {
 		registeredListeners.remove(listener.getId());
 	}
 
+	public void notifyListeners(String message) {
+		for (ListenerInterface listener : registeredListeners.values()) {
+			listener.notify(message);
+		}
+	}
+
 	public int getNrofRegisteredListeners() {
 		return registeredListeners.size();
 	}
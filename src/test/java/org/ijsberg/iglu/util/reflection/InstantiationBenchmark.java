@@ -0,0 +1,73 @@
+/*
+ * Copyright 2011-2013 Jeroen Meetsma - IJsberg
+ *
+ * This file is part of Iglu.
+ *
+ * Iglu is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Iglu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Iglu.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.ijsberg.iglu.util.reflection;
+
+import org.ijsberg.iglu.sample.configuration.Banana;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Measures throughput of ReflectionSupport.instantiateClass with mixed argument
+ * classes for increasing numbers of threads.
+ * Not a unit test; run the main method.
+ */
+public class InstantiationBenchmark {
+
+	private static final int NROF_INSTANTIATIONS_PER_THREAD = 500000;
+
+	public static void main(String[] args) throws Exception {
+		//warm up
+		run(2, NROF_INSTANTIATIONS_PER_THREAD / 10);
+		int maxNrofThreads = Math.max(4, Runtime.getRuntime().availableProcessors());
+		for (int nrofThreads = 1; nrofThreads <= maxNrofThreads; nrofThreads *= 2) {
+			long nanos = run(nrofThreads, NROF_INSTANTIATIONS_PER_THREAD);
+			long nrofInstantiations = (long) nrofThreads * NROF_INSTANTIATIONS_PER_THREAD;
+			System.out.println(nrofThreads + " thread(s): " + (nrofInstantiations * 1000000000L / nanos) + " instantiations/s");
+		}
+	}
+
+	private static long run(int nrofThreads, final int nrofInstantiations) throws InterruptedException {
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(nrofThreads);
+		for (int t = 0; t < nrofThreads; t++) {
+			new Thread(new Runnable() {
+				public void run() {
+					try {
+						start.await();
+						for (int i = 0; i < nrofInstantiations; i += 4) {
+							ReflectionSupport.instantiateClass(String.class, "hoppa");
+							ReflectionSupport.instantiateClass(StringBuilder.class, i);
+							ReflectionSupport.instantiateClass(Banana.class, i);
+							ReflectionSupport.instantiateClass(Banana.class, "27");
+						}
+					} catch (Exception e) {
+						e.printStackTrace();
+					} finally {
+						done.countDown();
+					}
+				}
+			}).start();
+		}
+		long startTime = System.nanoTime();
+		start.countDown();
+		done.await();
+		return System.nanoTime() - startTime;
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2011-2013 Jeroen Meetsma - IJsberg
+ *
+ * This file is part of Iglu.
+ *
+ * Iglu is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Iglu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Iglu.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.ijsberg.iglu.util.reflection;
+
+import org.ijsberg.iglu.sample.configuration.Apple;
+import org.ijsberg.iglu.sample.configuration.AppleInterface;
+import org.ijsberg.iglu.sample.configuration.shop.Shop;
+import org.ijsberg.iglu.sample.configuration.shop.ShopImpl;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ */
+public class MethodHandleDispatcherTest {
+
+	@Test
+	public void testInvoke() throws Throwable {
+		Apple apple = new Apple();
+		apple.setMessage("hello");
+		MethodHandleDispatcher dispatcher = new MethodHandleDispatcher(apple);
+
+		assertEquals("hello", dispatcher.invoke(AppleInterface.class.getMethod("getMessage"), null));
+		assertEquals("hello", dispatcher.invoke(AppleInterface.class.getMethod("getMessage"), new Object[0]));
+		assertEquals("true-23", dispatcher.invoke(AppleInterface.class.getMethod("returnInput", boolean.class, char.class, int.class),
+				new Object[]{true, '-', 23}));
+
+		dispatcher.invoke(Apple.class.getMethod("setSomeInt", int.class), new Object[]{5});
+		assertEquals(5, dispatcher.invoke(AppleInterface.class.getMethod("getSomeInt"), null));
+	}
+
+	@Test
+	public void testExceptionIsNotWrapped() throws Throwable {
+		MethodHandleDispatcher dispatcher = new MethodHandleDispatcher(new Apple());
+		try {
+			dispatcher.invoke(Apple.class.getMethod("getIntFromBanana"), null);
+			fail("NullPointerException expected");
+		} catch (NullPointerException expected) {
+		}
+	}
+
+	@Test
+	public void testInvokeWithWideningArguments() throws Throwable {
+		MethodHandleDispatcher dispatcher = new MethodHandleDispatcher(new ShopImpl("The Drugstore"));
+		//int argument for long parameter
+		assertNull(dispatcher.invoke(Shop.class.getMethod("findProductById", long.class), new Object[]{1}));
+	}
+
+	@Test
+	public void testInvokeWithMismatchingArguments() throws Throwable {
+		MethodHandleDispatcher dispatcher = new MethodHandleDispatcher(new Apple());
+		try {
+			dispatcher.invoke(Apple.class.getMethod("setSomeInt", int.class), new Object[]{"three"});
+			fail("IllegalArgumentException expected");
+		} catch (IllegalArgumentException expected) {
+		}
+		try {
+			dispatcher.invoke(Apple.class.getMethod("setSomeInt", int.class), new Object[]{null});
+			fail("IllegalArgumentException expected");
+		} catch (IllegalArgumentException expected) {
+		}
+		try {
+			dispatcher.invoke(Apple.class.getMethod("setSomeInt", int.class), null);
+			fail("IllegalArgumentException expected");
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
+	@Test
+	public void testInvokeNonPublicMethod() throws Throwable {
+		MethodHandleDispatcher dispatcher = new MethodHandleDispatcher(new Apple());
+		try {
+			dispatcher.invoke(Apple.class.getDeclaredMethod("touchCore"), null);
+			fail("IllegalAccessException expected");
+		} catch (IllegalAccessException expected) {
+		}
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2011-2013 Jeroen Meetsma - IJsberg
+ *
+ * This file is part of Iglu.
+ *
+ * Iglu is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Iglu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Iglu.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.ijsberg.iglu.util.reflection;
+
+import org.ijsberg.iglu.sample.configuration.AppleInterface;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+
+import static org.junit.Assert.*;
+
+/**
+ */
+public class MethodSelectorsTest {
+
+	public interface Annotated {
+		@Deprecated
+		void oldMethod();
+
+		void newMethod();
+	}
+
+	@Test
+	public void testByName() throws Exception {
+		MethodSelector selector = MethodSelectors.byName("getMessage", "getSomeInt");
+		assertTrue(selector.matches(AppleInterface.class.getMethod("getMessage")));
+		assertTrue(selector.matches(AppleInterface.class.getMethod("getSomeInt")));
+		assertFalse(selector.matches(AppleInterface.class.getMethod("returnInput", Object.class)));
+	}
+
+	@Test
+	public void testBySignature() throws Exception {
+		MethodSelector selector = MethodSelectors.bySignature("returnInput", Object.class);
+		assertTrue(selector.matches(AppleInterface.class.getMethod("returnInput", Object.class)));
+		assertFalse(selector.matches(AppleInterface.class.getMethod("returnInput", boolean.class, char.class, int.class)));
+		assertFalse(selector.matches(AppleInterface.class.getMethod("getMessage")));
+	}
+
+	@Test
+	public void testByAnnotation() throws Exception {
+		MethodSelector selector = MethodSelectors.byAnnotation(Deprecated.class);
+		assertTrue(selector.matches(Annotated.class.getMethod("oldMethod")));
+		assertFalse(selector.matches(Annotated.class.getMethod("newMethod")));
+	}
+
+	@Test
+	public void testAnyOf() throws Exception {
+		MethodSelector selector = MethodSelectors.anyOf(MethodSelectors.byName("getMessage"), new MethodSelector() {
+			public boolean matches(Method method) {
+				return method.getReturnType() == int.class;
+			}
+		});
+		assertTrue(selector.matches(AppleInterface.class.getMethod("getMessage")));
+		assertTrue(selector.matches(AppleInterface.class.getMethod("getSomeInt")));
+		assertFalse(selector.matches(AppleInterface.class.getMethod("returnInput", Object.class)));
+	}
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2011-2013 Jeroen Meetsma - IJsberg
+ *
+ * This file is part of Iglu.
+ *
+ * Iglu is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Iglu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Iglu.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.ijsberg.iglu.util.reflection;
+
+import org.ijsberg.iglu.sample.configuration.Apple;
+import org.ijsberg.iglu.sample.configuration.AppleInterface;
+import org.ijsberg.iglu.sample.configuration.Banana;
+import org.ijsberg.iglu.sample.configuration.Elstar;
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ */
+public class ProxyClassGeneratorTest {
+
+	public interface Arithmetic {
+		long add(long a, int b);
+
+		double multiply(double a, float b);
+
+		char[] toChars(String s, byte offset, short length);
+
+		void reset();
+
+		boolean isReset();
+	}
+
+	public static class ArithmeticImpl implements Arithmetic {
+
+		private boolean reset;
+
+		public long add(long a, int b) {
+			return a + b;
+		}
+
+		public double multiply(double a, float b) {
+			return a * b;
+		}
+
+		public char[] toChars(String s, byte offset, short length) {
+			if (s == null) {
+				throw new IllegalStateException("no input");
+			}
+			return s.substring(offset, offset + length).toCharArray();
+		}
+
+		public void reset() {
+			reset = true;
+		}
+
+		public boolean isReset() {
+			return reset;
+		}
+
+		public String toString() {
+			return "arithmetic";
+		}
+	}
+
+	private static class RecordingInterceptionPoint extends InterceptionPoint {
+
+		private final Method[] methods;
+		private final Object target;
+		private boolean intercepting;
+		private String lastIntercepted;
+
+		private RecordingInterceptionPoint(ProxyClass<?> proxyClass, Object target) {
+			this.methods = proxyClass.getMethods();
+			this.target = target;
+		}
+
+		@Override
+		public boolean isIntercepted(int methodIndex) {
+			return intercepting;
+		}
+
+		@Override
+		public Object intercept(Object proxy, int methodIndex, Object[] arguments) throws Throwable {
+			lastIntercepted = methods[methodIndex].getName() + (arguments != null ? Arrays.asList(arguments) : "");
+			return new MethodHandleDispatcher(target).invoke(methods[methodIndex], arguments);
+		}
+	}
+
+	@Test
+	public void testDirectInvocation() throws Exception {
+		ArithmeticImpl impl = new ArithmeticImpl();
+		ProxyClass<Arithmetic> proxyClass = ProxyClassGenerator.getProxyClass(ArithmeticImpl.class, Arithmetic.class);
+		assertNotNull(proxyClass);
+		RecordingInterceptionPoint interceptionPoint = new RecordingInterceptionPoint(proxyClass, impl);
+		Arithmetic proxy = proxyClass.newInstance(impl, interceptionPoint);
+
+		assertEquals(5L, proxy.add(3L, 2));
+		assertEquals(7.5, proxy.multiply(2.5, 3f), 0);
+		assertEquals("ell", new String(proxy.toChars("hello", (byte) 1, (short) 3)));
+		assertFalse(proxy.isReset());
+		proxy.reset();
+		assertTrue(proxy.isReset());
+		assertEquals("arithmetic", proxy.toString());
+		assertEquals(impl.hashCode(), proxy.hashCode());
+		assertTrue(proxy.equals(impl));
+
+		assertNull(interceptionPoint.lastIntercepted);
+	}
+
+	@Test
+	public void testInterceptedInvocation() throws Exception {
+		ArithmeticImpl impl = new ArithmeticImpl();
+		ProxyClass<Arithmetic> proxyClass = ProxyClassGenerator.getProxyClass(ArithmeticImpl.class, Arithmetic.class);
+		RecordingInterceptionPoint interceptionPoint = new RecordingInterceptionPoint(proxyClass, impl);
+		Arithmetic proxy = proxyClass.newInstance(impl, interceptionPoint);
+		interceptionPoint.intercepting = true;
+
+		assertEquals(5L, proxy.add(3L, 2));
+		assertEquals("add[3, 2]", interceptionPoint.lastIntercepted);
+		assertEquals(7.5, proxy.multiply(2.5, 3f), 0);
+		assertEquals("multiply[2.5, 3.0]", interceptionPoint.lastIntercepted);
+		assertEquals("ell", new String(proxy.toChars("hello", (byte) 1, (short) 3)));
+		proxy.reset();
+		assertEquals("reset", interceptionPoint.lastIntercepted);
+		assertTrue(proxy.isReset());
+		assertEquals("arithmetic", proxy.toString());
+		assertEquals("toString", interceptionPoint.lastIntercepted);
+
+		try {
+			proxy.toChars(null, (byte) 0, (short) 0);
+			fail("IllegalStateException expected");
+		} catch (IllegalStateException expected) {
+		}
+	}
+
+	@Test
+	public void testProxyClassPerImplementation() throws Exception {
+		ProxyClass<AppleInterface> appleProxyClass = ProxyClassGenerator.getProxyClass(Apple.class, AppleInterface.class);
+		ProxyClass<AppleInterface> elstarProxyClass = ProxyClassGenerator.getProxyClass(Elstar.class, AppleInterface.class);
+		assertNotNull(appleProxyClass);
+		assertNotNull(elstarProxyClass);
+		assertNotSame(appleProxyClass.getGeneratedClass(), elstarProxyClass.getGeneratedClass());
+		assertSame(appleProxyClass, ProxyClassGenerator.getProxyClass(Apple.class, AppleInterface.class));
+
+		assertEquals(1, appleProxyClass.getGeneratedClass().getInterfaces().length);
+		assertEquals(AppleInterface.class.getPackage().getName(), appleProxyClass.getGeneratedClass().getPackage().getName());
+	}
+
+	@Test
+	public void testNoProxyClassForInaccessiblePackage() throws Exception {
+		assertNull(ProxyClassGenerator.getProxyClass(Banana.class, Serializable.class));
+	}
+
+	@Test
+	public void testInterfaceNotImplemented() throws Exception {
+		try {
+			ProxyClassGenerator.getProxyClass(Apple.class, Arithmetic.class);
+			fail("IllegalArgumentException expected");
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+}
@@ -23,7 +23,9 @@ package org.ijsberg.iglu.util.reflection;
 import org.ijsberg.iglu.sample.configuration.*;
 import org.junit.Test;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.*;
 
@@ -121,4 +123,80 @@ public class ReflectionSupportTest {
 		} catch (IllegalArgumentException expected) {
 		}
 	}
+
+	@Test
+	public void testGetMethodsByName() throws Exception {
+		assertEquals(2, ReflectionSupport.getMethodsByName(Apple.class, "setBanana", 1).size());
+		assertEquals(1, ReflectionSupport.getMethodsByName(Apple.class, "returnInput", 3).size());
+		assertEquals(0, ReflectionSupport.getMethodsByName(Apple.class, "returnInput", 2).size());
+		assertEquals(0, ReflectionSupport.getMethodsByName(Apple.class, "touchCore", 0).size());
+		//inherited
+		assertEquals(1, ReflectionSupport.getMethodsByName(Elstar.class, "getMessage", 0).size());
+	}
+
+	@Test
+	public void testGetMethodIndex() throws Exception {
+		MethodIndex index = ReflectionSupport.getMethodIndex(Apple.class);
+		assertSame(index, ReflectionSupport.getMethodIndex(Apple.class));
+		assertSame(Apple.class, index.getIndexedClass());
+
+		assertEquals(Apple.class.getMethod("setSomeInt", int.class), index.getMethods("setSomeInt", 1).get(0));
+		assertEquals(1, index.getMethods("returnInput", 1).size());
+		assertTrue(index.getMethods("returnInput", 5).isEmpty());
+		assertTrue(index.getMethods("returnInput", -1).isEmpty());
+		assertTrue(index.getMethods("doesNotExist", 0).isEmpty());
+		assertTrue(index.containsMethodName("hashCode"));
+		assertFalse(index.containsMethodName("touchCore"));
+		try {
+			index.getMethods("setSomeInt", 1).clear();
+			fail("UnsupportedOperationException expected");
+		} catch (UnsupportedOperationException expected) {
+		}
+	}
+
+	@Test
+	public void testInstantiateWithMixedArgumentsConcurrently() throws Exception {
+		final AtomicInteger nrofFailures = new AtomicInteger();
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread(new Runnable() {
+				public void run() {
+					try {
+						for (int i = 0; i < 1000; i++) {
+							assertEquals("hoppa", ReflectionSupport.instantiateClass(String.class, "hoppa"));
+							assertEquals("" + i, ReflectionSupport.instantiateClass(String.class, i));
+							assertEquals(27, ReflectionSupport.instantiateClass(Banana.class, "27").returnAnInt());
+							assertEquals(i, ReflectionSupport.instantiateClass(Banana.class, i).returnAnInt());
+						}
+					} catch (Throwable e) {
+						e.printStackTrace();
+						nrofFailures.incrementAndGet();
+					}
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(0, nrofFailures.get());
+	}
+
+	@Test
+	public void testInstantiateWithoutMatchingConstructor() throws Exception {
+		for (int i = 0; i < 2; i++) {
+			try {
+				ReflectionSupport.instantiateClass(Apple.class, new File("banana"));
+				fail("InstantiationException expected");
+			} catch (InstantiationException expected) {
+			}
+		}
+		//conversion fails for this value only
+		try {
+			ReflectionSupport.instantiateClass(Banana.class, "twenty seven");
+			fail("InstantiationException expected");
+		} catch (InstantiationException expected) {
+		}
+		assertEquals(28, ReflectionSupport.instantiateClass(Banana.class, "28").returnAnInt());
+	}
 }
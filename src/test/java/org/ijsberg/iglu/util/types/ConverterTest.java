@@ -22,6 +22,8 @@ package org.ijsberg.iglu.util.types;
 import org.junit.Test;
 
 import java.io.File;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 
 import static junit.framework.Assert.assertTrue;
 import static org.junit.Assert.assertEquals;
@@ -233,6 +235,35 @@ public class ConverterTest {
 		}
 	}
 
+	@Test
+	public void convertToObjectRepeatedly() throws Exception {
+		for (int i = 0; i < 3; i++) {
+			assertEquals(5, Converter.convertToObject(5L, Integer.class));
+			assertEquals(7L, Converter.convertToObject(7, long.class));
+			assertEquals("8", Converter.convertToObject(8, String.class));
+			assertEquals(new BigDecimal("1.5"), Converter.convertToObject("1.5", BigDecimal.class));
+			//no constructor taking Integer
+			assertEquals(new BigInteger("12"), Converter.convertToObject(12, BigInteger.class));
+			try {
+				Converter.convertToObject(5.5, Integer.class);
+				fail("IllegalArgumentException expected");
+			} catch (IllegalArgumentException expected) {
+			}
+			try {
+				Converter.convertToObject("A", Character.class);
+				fail("IllegalArgumentException expected");
+			} catch (IllegalArgumentException expected) {
+			}
+			try {
+				Converter.convertToObject("A", void.class);
+				fail("IllegalArgumentException expected");
+			} catch (IllegalArgumentException expected) {
+			}
+		}
+		File file = new File("test");
+		assertEquals(file, Converter.convertToObject(file, Object.class));
+	}
+
 	@Test
 	public void convertToMatchingTypesTest() throws Exception {
 		Object[] objects = Converter.convertToMatchingTypes(new String[]{"10"}, new Class[]{Integer.class});